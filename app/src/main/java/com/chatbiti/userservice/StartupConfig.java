@@ -0,0 +1,24 @@
+package com.chatbiti.userservice;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+    // Only consulted when lazy initialization is on (fast-startup profile). These stay eager because the first
+    // authenticated request would otherwise pay for creating them, and @Scheduled methods of a bean that is
+    // never created would never run.
+    @Bean
+    static LazyInitializationExcludeFilter hotPathBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                JwtService.class,
+                TokenStore.class,
+                UserDetailsCache.class,
+                AuthMetrics.class,
+                ExpiredTokenReaper.class,
+                UserService.class,
+                UserController.class
+        );
+    }
+}
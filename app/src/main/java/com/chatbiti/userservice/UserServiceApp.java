@@ -3,8 +3,10 @@ package com.chatbiti.userservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(scanBasePackages = {"com.chatbiti.userservice"}, exclude = {SecurityAutoConfiguration.class })
+@EnableScheduling
 public class UserServiceApp {
 
 	public static void main(String[] args) {
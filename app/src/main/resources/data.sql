@@ -1,3 +0,0 @@
-INSERT INTO ROLE (name) VALUES
-    ('USER'),
-    ('PREMIUM_USER');
@@ -0,0 +1,53 @@
+-- Mirrors the JPA mappings in the domain module, Hibernate no longer generates the schema (ddl-auto=none)
+
+create sequence user_seq start with 1 increment by 50;
+create sequence token_seq start with 1 increment by 50;
+
+create table "user" (
+    id bigint not null,
+    email varchar(255),
+    password varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    email_verified boolean,
+    constraint pk_user primary key (id),
+    constraint uk_user_email unique (email)
+);
+
+create table role (
+    id bigint generated by default as identity,
+    name varchar(255),
+    constraint pk_role primary key (id),
+    constraint uk_role_name unique (name)
+);
+
+-- The primary key serves lookups of a user's roles, the extra index the reverse (users having a role)
+create table user_role (
+    user_id bigint not null,
+    role_id bigint not null,
+    constraint pk_user_role primary key (user_id, role_id),
+    constraint fk_user_role_user foreign key (user_id) references "user" (id),
+    constraint fk_user_role_role foreign key (role_id) references role (id)
+);
+create index idx_user_role_role_id on user_role (role_id, user_id);
+
+-- token_digest is unique and thereby indexed, it replaces the raw token column
+create table token (
+    id bigint not null,
+    token_digest varchar(64) not null,
+    creation_date timestamp(6),
+    expiration_date timestamp(6),
+    token_type varchar(32),
+    "user_id" bigint not null,
+    constraint pk_token primary key (id),
+    constraint uk_token_token_digest unique (token_digest),
+    constraint fk_token_user foreign key ("user_id") references "user" (id)
+);
+create index idx_token_expiration_date on token (expiration_date);
+-- Serves the per-user session listing (logout-all, session cap) newest first
+create index idx_token_user_id on token ("user_id", creation_date);
+
+insert into role (name) values
+    ('USER'),
+    ('PREMIUM_USER'),
+    ('ADMIN');
@@ -0,0 +1,10 @@
+-- Token signing key ring, shared by all instances (see SigningKeyRing)
+create table signing_key (
+    kid varchar(64) not null,
+    algorithm varchar(16) not null,
+    private_key varchar(1024) not null,
+    public_key varchar(1024),
+    created_at timestamp(6) not null,
+    activates_at timestamp(6) not null,
+    constraint pk_signing_key primary key (kid)
+);
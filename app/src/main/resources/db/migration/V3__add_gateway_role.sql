@@ -0,0 +1,2 @@
+-- Granted to API gateways so they can call /v1/user/introspect
+insert into role (name) values ('GATEWAY');
@@ -0,0 +1,5 @@
+-- Refresh tokens (token_type REFRESH) of one login share a family, a replayed rotated token revokes the family.
+-- Rotated tokens are kept flagged as used until then, so a replay can be recognised.
+alter table token add column family varchar(36);
+alter table token add column used boolean default false not null;
+create index idx_token_family on token (family);
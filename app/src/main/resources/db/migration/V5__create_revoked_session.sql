@@ -0,0 +1,6 @@
+-- Sessions ended while their access tokens were still valid, polled by every instance (see SessionDenylist)
+create table revoked_session (
+    session_id varchar(36) not null,
+    expires_at timestamp(6) not null,
+    constraint pk_revoked_session primary key (session_id)
+);
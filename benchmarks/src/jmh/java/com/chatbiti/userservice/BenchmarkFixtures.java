@@ -0,0 +1,72 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.Role;
+import com.chatbiti.userservice.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+// Builds the security beans by hand, the way Spring would wire them, without starting a context
+final class BenchmarkFixtures {
+    static final String KEY = "IWp9WwnDHoq+2XViImpgEjieUdD4Ux/nHZigMPr36XM=";
+
+    static final long TOKEN_DURATION = 86400000;
+
+    static final long REFRESH_TOKEN_DURATION = 2592000000L;
+
+    private BenchmarkFixtures() {
+    }
+
+    static User user(String email) {
+        return new User(email, "password", "John", "Doe", false,
+                new ArrayList<>(List.of(new Role("USER"), new Role("PREMIUM_USER"))));
+    }
+
+    static TokenStore tokenStore() {
+        // Stub-only so the mock doesn't record millions of invocations during a run
+        return new TokenStore(mock(TokenRepository.class, withSettings().stubOnly()), mock(TransactionTemplate.class),
+                new SessionDenylist(mock(RevokedSessionRepository.class, withSettings().stubOnly()), false, TOKEN_DURATION),
+                false, 0, REFRESH_TOKEN_DURATION, TOKEN_DURATION);
+    }
+
+    static JwtService jwtService(TokenStore tokenStore, long tokenDuration) {
+        return jwtService(tokenStore, tokenDuration, "HS256");
+    }
+
+    // ES256 and EdDSA use a freshly generated key pair
+    static JwtService jwtService(TokenStore tokenStore, long tokenDuration, String algorithm) {
+        JwtService jwtService = new JwtService(tokenStore, authMetrics(), signingKeyRing(algorithm));
+        ReflectionTestUtils.setField(jwtService, "tokenDuration", tokenDuration);
+        jwtService.init();
+        return jwtService;
+    }
+
+    // Seeded from the configured key into a repository that stays empty, rotation is off
+    static SigningKeyRing signingKeyRing(String algorithm) {
+        SigningKeyRing signingKeyRing = new SigningKeyRing(mock(SigningKeyRepository.class, withSettings().stubOnly()),
+                KEY, algorithm, "", "", "", "", TOKEN_DURATION, Duration.ZERO, Duration.ZERO, 0, Duration.ZERO);
+        signingKeyRing.init();
+        return signingKeyRing;
+    }
+
+    static AuthMetrics authMetrics() {
+        // A real registry, recording is part of the measured cost
+        return new AuthMetrics(new StaticListableBeanFactory(Map.<String, Object>of("meterRegistry", new SimpleMeterRegistry()))
+                .getBeanProvider(MeterRegistry.class));
+    }
+
+    static ObjectProvider<MeterRegistry> noMeterRegistry() {
+        return new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class);
+    }
+}
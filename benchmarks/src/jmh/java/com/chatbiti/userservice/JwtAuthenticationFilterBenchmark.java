@@ -0,0 +1,115 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.Token;
+import com.chatbiti.userservice.model.TokenType;
+import com.chatbiti.userservice.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+// One benchmark per outcome of JwtAuthenticationFilter: the accept path and each reject path
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtAuthenticationFilterBenchmark {
+    private JwtAuthenticationFilter filter;
+
+    private String validToken;
+
+    private String expiredToken;
+
+    private String revokedToken;
+
+    private String unknownUserToken;
+
+    @Setup
+    public void setUp() {
+        User user = BenchmarkFixtures.user("bench@example.com");
+        TokenStore tokenStore = BenchmarkFixtures.tokenStore();
+        JwtService jwtService = BenchmarkFixtures.jwtService(tokenStore, BenchmarkFixtures.TOKEN_DURATION);
+        JwtService expiredJwtService = BenchmarkFixtures.jwtService(tokenStore, -60000);
+
+        UserDetailsCache userDetailsCache = new UserDetailsCache(
+                email -> {
+                    if (!email.equals(user.getEmail())) {
+                        throw new UsernameNotFoundException("Invalid email address!");
+                    }
+                    return user;
+                },
+                BenchmarkFixtures.noMeterRegistry(),
+                10000,
+                Duration.ofMinutes(1)
+        );
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsCache,
+                new ObjectMapper().registerModule(new Jdk8Module()), BenchmarkFixtures.authMetrics());
+
+        VerifiedToken issued = jwtService.issueToken(user, new HashMap<>());
+        tokenStore.save(new Token(
+                issued.token(),
+                LocalDateTime.ofInstant(issued.getExpiration().toInstant(), ZoneId.systemDefault()),
+                TokenType.BEARER,
+                user
+        ));
+        validToken = issued.token();
+        expiredToken = expiredJwtService.generateToken(user, new HashMap<>());
+        revokedToken = jwtService.generateToken(user, new HashMap<>());
+        unknownUserToken = jwtService.generateToken(BenchmarkFixtures.user("unknown@example.com"), new HashMap<>());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse accepted() throws Exception {
+        return authenticate("Bearer " + validToken);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedMissingHeader() throws Exception {
+        return authenticate(null);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedInvalidSignature() throws Exception {
+        return authenticate("Bearer " + validToken.substring(0, validToken.length() - 4) + "AAAA");
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedExpired() throws Exception {
+        return authenticate("Bearer " + expiredToken);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedRevoked() throws Exception {
+        return authenticate("Bearer " + revokedToken);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse rejectedUnknownUser() throws Exception {
+        return authenticate("Bearer " + unknownUserToken);
+    }
+
+    private MockHttpServletResponse authenticate(String authorizationHeader) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/user/authenticate");
+        request.setServletPath("/v1/user/authenticate");
+        if (authorizationHeader != null) {
+            request.addHeader(AUTHORIZATION, authorizationHeader);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        SecurityContextHolder.clearContext();
+        return response;
+    }
+}
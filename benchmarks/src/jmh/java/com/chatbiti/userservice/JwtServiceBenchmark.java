@@ -0,0 +1,56 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.Token;
+import com.chatbiti.userservice.model.TokenType;
+import com.chatbiti.userservice.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtServiceBenchmark {
+    @Param({"HS256", "ES256", "EdDSA"})
+    private String algorithm;
+
+    private JwtService jwtService;
+
+    private User user;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        TokenStore tokenStore = BenchmarkFixtures.tokenStore();
+        jwtService = BenchmarkFixtures.jwtService(tokenStore, BenchmarkFixtures.TOKEN_DURATION, algorithm);
+        user = BenchmarkFixtures.user("bench@example.com");
+
+        VerifiedToken issued = jwtService.issueToken(user, new HashMap<>());
+        tokenStore.save(new Token(
+                issued.token(),
+                LocalDateTime.ofInstant(issued.getExpiration().toInstant(), ZoneId.systemDefault()),
+                TokenType.BEARER,
+                user
+        ));
+        token = issued.token();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user, new HashMap<>());
+    }
+
+    @Benchmark
+    public String extractEmail() {
+        return jwtService.extractEmail(token);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return jwtService.isValid(token, user);
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatbiti.userservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Run with all threads hammering the limiter at once: "shared" makes every thread CAS the same bucket,
+// "spread" picks from many keys the way distinct clients would
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(Threads.MAX)
+public class LoginRateLimiterBenchmark {
+    private static final int KEYS = 100_000;
+
+    @Param({"shared", "spread"})
+    public String keys;
+
+    // "open" lets every attempt through, "saturated" rejects almost all of them
+    @Param({"open", "saturated"})
+    public String limits;
+
+    private LoginRateLimiter rateLimiter;
+
+    private String[] addresses;
+
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        int perMinute = limits.equals("open") ? Integer.MAX_VALUE : 1;
+        rateLimiter = new LoginRateLimiter(BenchmarkFixtures.noMeterRegistry(), true, KEYS * 2L,
+                perMinute, perMinute, perMinute, perMinute);
+
+        int size = keys.equals("shared") ? 1 : KEYS;
+        addresses = new String[size];
+        emails = new String[size];
+        for (int i = 0; i < size; i++) {
+            addresses[i] = "10.0." + (i / 256) + "." + (i % 256);
+            emails[i] = "user" + i + "@example.com";
+        }
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        int i = ThreadLocalRandom.current().nextInt(addresses.length);
+        return rateLimiter.tryAcquire(addresses[i], emails[i]);
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UserAuthoritiesBenchmark {
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = BenchmarkFixtures.user("bench@example.com");
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+}
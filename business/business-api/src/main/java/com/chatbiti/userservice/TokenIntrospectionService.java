@@ -0,0 +1,9 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.TokenIntrospectionResponseDto;
+
+import java.util.List;
+
+public interface TokenIntrospectionService {
+    public TokenIntrospectionResponseDto introspect(List<String> tokens);
+}
@@ -0,0 +1,8 @@
+package com.chatbiti.userservice;
+
+import java.util.Map;
+
+public interface TokenKeyService {
+    // The keys tokens can be verified with, as a JWK Set (RFC 7517)
+    public Map<String, Object> getJsonWebKeySet();
+}
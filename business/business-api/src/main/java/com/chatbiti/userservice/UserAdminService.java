@@ -0,0 +1,21 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.UserImportEntry;
+import com.chatbiti.userservice.model.UserImportResult;
+import com.chatbiti.userservice.model.UserPage;
+import com.chatbiti.userservice.model.UserSummary;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+public interface UserAdminService {
+    // Consumes the entries chunk by chunk and reports one result per entry, in input order
+    public void importUsers(Iterator<UserImportEntry> entries, Consumer<UserImportResult> results);
+
+    // Returns up to limit users with an id greater than afterId, optionally only those with the given role
+    public UserPage listUsers(Optional<String> role, long afterId, int limit);
+
+    // Hands every matching user to the consumer in id order without loading them all at once
+    public void exportUsers(Optional<String> role, Consumer<UserSummary> users);
+}
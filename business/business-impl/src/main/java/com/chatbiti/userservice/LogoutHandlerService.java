@@ -1,31 +1,34 @@
 package com.chatbiti.userservice;
 
-import com.chatbiti.userservice.model.Token;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Optional;
 
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
 @Service
 public class LogoutHandlerService implements LogoutHandler {
-    private TokenRepository tokenRepository;
+    private TokenStore tokenStore;
 
-    private ObjectMapper mapper;
+    private JwtService jwtService;
 
-    public LogoutHandlerService(TokenRepository tokenRepository, ObjectMapper mapper) {
-        this.tokenRepository = tokenRepository;
-        this.mapper = mapper;
+    private StaticResponseBody successResponse;
+
+    private StaticResponseBody notLoggedInResponse;
+
+    private StaticResponseBody invalidTokenResponse;
+
+    public LogoutHandlerService(TokenStore tokenStore, JwtService jwtService, ObjectMapper mapper) {
+        this.tokenStore = tokenStore;
+        this.jwtService = jwtService;
+        this.successResponse = new StaticResponseBody(mapper, "success", Optional.empty());
+        this.notLoggedInResponse = new StaticResponseBody(mapper, "failure", Optional.of("You are not logged in!"));
+        this.invalidTokenResponse = new StaticResponseBody(mapper, "failure", Optional.of("Invalid or expired token!"));
     }
 
     @Override
@@ -33,33 +36,31 @@ public class LogoutHandlerService implements LogoutHandler {
         String authHeader = request.getHeader(AUTHORIZATION);
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            fillResponseBody(response, "failure", Optional.of("You are not logged in!"));
+            notLoggedInResponse.writeTo(response);
             return;
         }
 
         String token = authHeader.substring(7);
-        Optional<Token> storedToken = tokenRepository.findByToken(token);
-        if (storedToken.isPresent()) {
-            tokenRepository.delete(storedToken.get());
-            fillResponseBody(response, "success", Optional.empty());
+        if (logout(token)) {
+            successResponse.writeTo(response);
             return;
         }
 
-        fillResponseBody(response, "failure", Optional.of("Invalid or expired token!"));
+        invalidTokenResponse.writeTo(response);
     }
 
-    private void fillResponseBody(HttpServletResponse response, String status, Optional<String> errorMessage) {
-        response.setStatus(HttpStatus.OK.value());
-        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-
-        Map<String, Object> responseMap = new LinkedHashMap<>();
-        responseMap.put("status", status);
-        responseMap.put("errorMessage", errorMessage);
+    // An access token isn't stored, logging out ends its session (refresh token family) instead.
+    // The session denylist then rejects the access token on every instance.
+    private boolean logout(String token) {
+        VerifiedToken verifiedToken;
         try {
-            mapper.writeValue(response.getWriter(), responseMap);
-        } catch (IOException e) {
-            // In general shouldn't reach here
-            System.out.println("Couldn't get the response writer!");
+            verifiedToken = jwtService.verify(token);
+        }
+        catch (Exception e) {
+            return false;
         }
+
+        String sessionId = verifiedToken.getSessionId();
+        return sessionId != null ? tokenStore.revokeFamily(sessionId) : tokenStore.delete(token);
     }
 }
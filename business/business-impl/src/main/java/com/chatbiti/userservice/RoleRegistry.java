@@ -0,0 +1,56 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.Role;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Roles are a tiny, nearly static set, so they are loaded once instead of queried on every register/subscribe.
+// A name that is still missing after a reload is remembered as missing until the next scheduled refresh,
+// so a role that doesn't exist costs one reload per refresh interval, not one per request.
+@Component
+public class RoleRegistry {
+    private RoleRepository roleRepository;
+
+    private volatile Map<String, Role> roles = Map.of();
+
+    private final Set<String> missingNames = ConcurrentHashMap.newKeySet();
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${application.security.role-registry.refresh-interval}",
+               initialDelayString = "${application.security.role-registry.refresh-interval}")
+    public void refresh() {
+        reload();
+        missingNames.clear();
+    }
+
+    public Optional<Role> findByName(String name) {
+        Role role = roles.get(name);
+        if (role == null && !missingNames.contains(name)) {
+            // The role may have been added after the last refresh
+            reload();
+            role = roles.get(name);
+            if (role == null) {
+                missingNames.add(name);
+            }
+        }
+        return Optional.ofNullable(role);
+    }
+
+    private void reload() {
+        Map<String, Role> loadedRoles = new HashMap<>();
+        roleRepository.findAll().forEach(role -> loadedRoles.put(role.getName(), role));
+        roles = Map.copyOf(loadedRoles);
+    }
+}
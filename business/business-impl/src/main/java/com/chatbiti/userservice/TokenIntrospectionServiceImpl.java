@@ -0,0 +1,88 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.TokenIntrospection;
+import com.chatbiti.userservice.model.TokenIntrospectionResponseDto;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+public class TokenIntrospectionServiceImpl implements TokenIntrospectionService {
+    private static final TokenIntrospection INACTIVE = new TokenIntrospection(false, Optional.empty(), List.of(), Optional.empty());
+
+    private JwtService jwtService;
+
+    private TokenStore tokenStore;
+
+    // Signature checks are CPU bound, they get their own pool instead of the common one.
+    // Kept below the core count so a large batch leaves room for the requests being authenticated meanwhile.
+    private ForkJoinPool verificationPool;
+
+    public TokenIntrospectionServiceImpl(JwtService jwtService,
+                                         TokenStore tokenStore,
+                                         @Value("${application.security.introspection.threads}") int threads) {
+        this.jwtService = jwtService;
+        this.tokenStore = tokenStore;
+        // 0 means half of the available cores, never more than all of them
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.verificationPool = new ForkJoinPool(threads > 0 ? Math.min(threads, cores) : Math.max(1, cores / 2));
+    }
+
+    @Override
+    public TokenIntrospectionResponseDto introspect(List<String> tokens) {
+        List<CompletableFuture<VerifiedToken>> futures = tokens.stream()
+                .map(token -> CompletableFuture.supplyAsync(() -> verifyOrNull(token), verificationPool))
+                .toList();
+        // null for tokens that failed verification
+        List<VerifiedToken> verifiedTokens = futures.stream().map(CompletableFuture::join).toList();
+
+        // Revocation is checked for the whole batch at once, one query at most.
+        // Access tokens aren't stored, they are checked against the in-memory session denylist like in JwtService.isValid.
+        List<String> storedTokens = verifiedTokens.stream()
+                .filter(Objects::nonNull)
+                .filter(verifiedToken -> !verifiedToken.isExpired() && verifiedToken.getSessionId() == null)
+                .map(VerifiedToken::token)
+                .toList();
+        Set<String> activeTokens = storedTokens.isEmpty() ? Set.of() : tokenStore.findActive(storedTokens);
+
+        List<TokenIntrospection> results = new ArrayList<>(tokens.size());
+        for (VerifiedToken verifiedToken : verifiedTokens) {
+            if (verifiedToken == null || verifiedToken.isExpired()
+                || (verifiedToken.getSessionId() == null && !activeTokens.contains(verifiedToken.token()))
+                || (verifiedToken.getSessionId() != null && tokenStore.isSessionRevoked(verifiedToken.getSessionId()))) {
+                results.add(INACTIVE);
+                continue;
+            }
+            results.add(new TokenIntrospection(
+                    true,
+                    Optional.of(verifiedToken.getEmail()),
+                    verifiedToken.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList(),
+                    Optional.of(verifiedToken.getExpiration().getTime() / 1000)
+            ));
+        }
+        return new TokenIntrospectionResponseDto("success", Optional.empty(), results);
+    }
+
+    private VerifiedToken verifyOrNull(String token) {
+        try {
+            return jwtService.verify(token);
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verificationPool.shutdown();
+    }
+}
@@ -0,0 +1,19 @@
+package com.chatbiti.userservice;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+@Service
+public class TokenKeyServiceImpl implements TokenKeyService {
+    private SigningKeyRing signingKeyRing;
+
+    public TokenKeyServiceImpl(SigningKeyRing signingKeyRing) {
+        this.signingKeyRing = signingKeyRing;
+    }
+
+    @Override
+    public Map<String, Object> getJsonWebKeySet() {
+        return signingKeyRing.getJsonWebKeySet();
+    }
+}
@@ -0,0 +1,188 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.*;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Service
+public class UserAdminServiceImpl implements UserAdminService {
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private UserRepository userRepository;
+
+    private RoleRegistry roleRegistry;
+
+    private PasswordEncoder passwordEncoder;
+
+    private TransactionTemplate transactionTemplate;
+
+    private int chunkSize;
+
+    // Separate from the login hashing pool so an import can't queue ahead of interactive logins,
+    // and smaller than the machine so it leaves them cores to run on
+    private ForkJoinPool hashingPool;
+
+    public UserAdminServiceImpl(UserRepository userRepository,
+                                RoleRegistry roleRegistry,
+                                PasswordEncoder passwordEncoder,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${application.admin.import.chunk-size}") int chunkSize,
+                                @Value("${application.admin.import.hashing-threads}") int hashingThreads) {
+        this.userRepository = userRepository;
+        this.roleRegistry = roleRegistry;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        // 0 means half of the available cores
+        this.hashingPool = new ForkJoinPool(hashingThreads > 0
+                ? hashingThreads
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    @Override
+    public void importUsers(Iterator<UserImportEntry> entries, Consumer<UserImportResult> results) {
+        String roleName = "USER";
+        Optional<Role> roleSearchResult = roleRegistry.findByName(roleName);
+        if (roleSearchResult.isEmpty()) {
+            System.out.println("Error: Couldn't find the role: " + roleName);
+            throw new IllegalStateException("Couldn't find the role: " + roleName);
+        }
+
+        long line = 0;
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        while (entries.hasNext()) {
+            chunk.add(new ImportRow(++line, entries.next()));
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, roleSearchResult.get(), results);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, roleSearchResult.get(), results);
+        }
+    }
+
+    @Override
+    public UserPage listUsers(Optional<String> role, long afterId, int limit) {
+        Pageable page = PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+        List<UserSummary> users = role.isPresent()
+                ? userRepository.findSummariesByRoleAfter(role.get(), afterId, page)
+                : userRepository.findSummariesAfter(afterId, page);
+
+        // A short page is the last one, no need for another round trip to find out
+        Optional<Long> nextCursor = users.size() == page.getPageSize()
+                ? Optional.of(users.get(users.size() - 1).id())
+                : Optional.empty();
+        return new UserPage(users, nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportUsers(Optional<String> role, Consumer<UserSummary> users) {
+        try (Stream<UserSummary> rows = role.isPresent()
+                ? userRepository.streamSummariesByRole(role.get())
+                : userRepository.streamSummaries()) {
+            rows.forEach(users);
+        }
+    }
+
+    private void importChunk(List<ImportRow> chunk, Role role, Consumer<UserImportResult> results) {
+        Map<Long, UserImportResult> failures = new HashMap<>();
+        Map<String, ImportRow> candidates = new LinkedHashMap<>();
+        for (ImportRow row : chunk) {
+            UserImportEntry entry = row.entry();
+            if (entry.email() == null || entry.password() == null || entry.firstName() == null || entry.lastName() == null) {
+                failures.put(row.line(), failure(row, "Missing required fields!"));
+            }
+            else if (candidates.putIfAbsent(entry.email(), row) != null) {
+                failures.put(row.line(), failure(row, "Email is already used!"));
+            }
+        }
+
+        // One set-based query for the whole chunk instead of existsByEmail per row
+        if (!candidates.isEmpty()) {
+            for (String existingEmail : userRepository.findExistingEmails(candidates.keySet())) {
+                ImportRow row = candidates.remove(existingEmail);
+                if (row != null) {
+                    failures.put(row.line(), failure(row, "Email is already used!"));
+                }
+            }
+        }
+
+        List<ImportRow> toInsert = new ArrayList<>(candidates.values());
+        List<String> encodedPasswords = encodeAll(toInsert);
+        insertAll(toInsert, encodedPasswords, role, failures);
+
+        for (ImportRow row : chunk) {
+            UserImportResult failure = failures.get(row.line());
+            results.accept(failure != null
+                    ? failure
+                    : new UserImportResult(row.line(), row.entry().email(), "success", Optional.empty()));
+        }
+    }
+
+    private List<String> encodeAll(List<ImportRow> rows) {
+        List<CompletableFuture<String>> futures = rows.stream()
+                .map(row -> CompletableFuture.supplyAsync(() -> passwordEncoder.encode(row.entry().password()), hashingPool))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    private void insertAll(List<ImportRow> rows, List<String> encodedPasswords, Role role, Map<Long, UserImportResult> failures) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Flushed as JDBC batches on commit (hibernate.jdbc.batch_size)
+            transactionTemplate.executeWithoutResult(status -> {
+                List<User> users = new ArrayList<>(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    users.add(toUser(rows.get(i).entry(), encodedPasswords.get(i), role));
+                }
+                userRepository.saveAll(users);
+            });
+        }
+        catch (DataIntegrityViolationException exception) {
+            // Someone registered one of these emails concurrently, find out which row by inserting one by one
+            for (int i = 0; i < rows.size(); i++) {
+                ImportRow row = rows.get(i);
+                try {
+                    userRepository.save(toUser(row.entry(), encodedPasswords.get(i), role));
+                }
+                catch (DataIntegrityViolationException rowException) {
+                    failures.put(row.line(), failure(row, "Email is already used!"));
+                }
+            }
+        }
+    }
+
+    private User toUser(UserImportEntry entry, String encodedPassword, Role role) {
+        return new User(entry.email(), encodedPassword, entry.firstName(), entry.lastName(), false, List.of(role));
+    }
+
+    private UserImportResult failure(ImportRow row, String errorMessage) {
+        return new UserImportResult(row.line(), row.entry().email(), "failure", Optional.of(errorMessage));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    private record ImportRow(long line, UserImportEntry entry) {
+    }
+}
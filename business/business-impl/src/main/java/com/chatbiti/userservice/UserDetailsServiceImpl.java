@@ -1,6 +1,7 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.User;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,14 +14,19 @@ import java.util.Optional;
 public class UserDetailsServiceImpl implements UserDetailsService {
     private UserRepository userRepository;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    private AuthMetrics authMetrics;
+
+    public UserDetailsServiceImpl(UserRepository userRepository, AuthMetrics authMetrics) {
         this.userRepository = userRepository;
+        this.authMetrics = authMetrics;
     }
 
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        Timer.Sample sample = authMetrics.start();
         Optional<User> userDetails = userRepository.findByEmail(email);
+        authMetrics.stop(sample, AuthMetrics.USER_LOOKUP, userDetails.isPresent() ? "found" : "unknown_user");
         if (userDetails.isEmpty()) {
             throw new UsernameNotFoundException("Invalid email address!");
         }
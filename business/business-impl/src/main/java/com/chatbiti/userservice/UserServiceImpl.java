@@ -1,6 +1,9 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.*;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -17,14 +20,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class UserServiceImpl implements UserService {
     private UserRepository userRepository;
 
-    private TokenRepository tokenRepository;
+    private TokenStore tokenStore;
 
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
 
     private PasswordEncoder passwordEncoder;
 
@@ -32,61 +37,111 @@ public class UserServiceImpl implements UserService {
 
     private JwtService jwtService;
 
+    private UserDetailsCache userDetailsCache;
+
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    private AuthMetrics authMetrics;
+
+    private LoginRateLimiter loginRateLimiter;
+
+    // Short-lived stateless access tokens plus refresh tokens, instead of one long-lived persisted token
+    private boolean refreshTokensEnabled;
+
     public UserServiceImpl(UserRepository userRepository,
-                           TokenRepository tokenRepository,
-                           RoleRepository roleRepository,
+                           TokenStore tokenStore,
+                           RoleRegistry roleRegistry,
                            PasswordEncoder passwordEncoder,
                            AuthenticationManager authenticationManager,
-                           JwtService jwtService) {
+                           JwtService jwtService,
+                           UserDetailsCache userDetailsCache,
+                           PasswordHashingExecutor passwordHashingExecutor,
+                           AuthMetrics authMetrics,
+                           LoginRateLimiter loginRateLimiter,
+                           @Value("${application.security.refresh-tokens.enabled}") boolean refreshTokensEnabled) {
         this.userRepository = userRepository;
-        this.tokenRepository = tokenRepository;
-        this.roleRepository = roleRepository;
+        this.tokenStore = tokenStore;
+        this.roleRegistry = roleRegistry;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
+        this.userDetailsCache = userDetailsCache;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.authMetrics = authMetrics;
+        this.loginRateLimiter = loginRateLimiter;
+        this.refreshTokensEnabled = refreshTokensEnabled;
     }
 
 
     @Override
     public UserRegisterResponseDto register(String email, String password, String firstName, String lastName) {
-        if (userRepository.existsByEmail(email)) {
-            return new UserRegisterResponseDto("failure", Optional.of("Email is already used!" ));
-        }
-
         String roleName = "USER";
-        Optional<Role> roleSearchResult = roleRepository.findByName(roleName);
+        Optional<Role> roleSearchResult = roleRegistry.findByName(roleName);
         if (roleSearchResult.isEmpty()) {
             System.out.println("Error: Couldn't find the role: " + roleName);
             return new UserRegisterResponseDto("failure", Optional.of("Error during registration!"));
         }
 
-        User user = new User(email,passwordEncoder.encode(password), firstName, lastName, false, List.of(roleSearchResult.get()));
-        userRepository.save(user);
+        String encodedPassword;
+        try {
+            encodedPassword = passwordHashingExecutor.execute(() -> passwordEncoder.encode(password));
+        }
+        catch (RejectedExecutionException exception) {
+            return new UserRegisterResponseDto("failure", Optional.of("Server is busy, please try again later!"));
+        }
+
+        User user = new User(email, encodedPassword, firstName, lastName, false, List.of(roleSearchResult.get()));
+        try {
+            // A single insert, duplicates (including concurrent ones) are caught by the unique email constraint
+            userRepository.save(user);
+        }
+        catch (DataIntegrityViolationException exception) {
+            return new UserRegisterResponseDto("failure", Optional.of("Email is already used!"));
+        }
+        userDetailsCache.invalidate(email);
 
         return new UserRegisterResponseDto("success", Optional.empty());
     }
 
     @Override
-    public UserLoginResponseDto login(String email, String password) {
+    public UserLoginResponseDto login(String email, String password, String clientAddress) {
+        // Refused before any BCrypt work, that is the CPU a guessing client would otherwise burn
+        if (!loginRateLimiter.tryAcquire(clientAddress, email)) {
+            return new UserLoginResponseDto("failure", Optional.of("Too many login attempts, please try again later!"), Optional.empty(), Optional.empty(), Optional.empty());
+        }
+
         Authentication authentication;
+        Timer.Sample sample = authMetrics.start();
         try {
-            authentication = authenticationManager.authenticate(
+            authentication = passwordHashingExecutor.execute(() -> authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(email, password)
-            );
+            ));
+            authMetrics.stop(sample, AuthMetrics.AUTHENTICATE, "success");
+        }
+        catch (RejectedExecutionException exception) {
+            authMetrics.stop(sample, AuthMetrics.AUTHENTICATE, "rejected");
+            return new UserLoginResponseDto("failure", Optional.of("Server is busy, please try again later!"), Optional.empty(), Optional.empty(), Optional.empty());
         }
         catch (Exception exception) {
-            return new UserLoginResponseDto("failure", Optional.of("Wrong email or password!"), Optional.empty(), Optional.empty());
+            authMetrics.stop(sample, AuthMetrics.AUTHENTICATE, "bad_credentials");
+            return new UserLoginResponseDto("failure", Optional.of("Wrong email or password!"), Optional.empty(), Optional.empty(), Optional.empty());
         }
 
-        var claims = new HashMap<String, Object>();
         User user = ((User)authentication.getPrincipal());
-        String token = jwtService.generateToken(user, claims);
-        tokenRepository.save(new Token(
-                token,
-                convertToLocalDateTime(jwtService.extractExpiration(token)),
-                TokenType.BEARER,
-                user
-        ));
+        rehashIfOutdated(user, password);
+        VerifiedToken token;
+        Optional<String> refreshToken = Optional.empty();
+        if (refreshTokensEnabled) {
+            // The refresh token family is the session, the access token is never stored
+            String sessionId = UUID.randomUUID().toString();
+            refreshToken = Optional.of(tokenStore.issueRefreshToken(user, sessionId));
+            token = jwtService.issueAccessToken(user, sessionId);
+        }
+        else {
+            token = jwtService.issueToken(user, new HashMap<String, Object>());
+            saveToken(token, user);
+        }
+        tokenStore.enforceSessionCap(user);
         UserInfo userInfo = new UserInfo(
                 user.getFirstName(),
                 user.getLastName(),
@@ -94,7 +149,24 @@ public class UserServiceImpl implements UserService {
                 user.getEmailVerified()
         );
 
-        return new UserLoginResponseDto("success", Optional.empty(), Optional.of(userInfo), Optional.of(token));
+        return new UserLoginResponseDto("success", Optional.empty(), Optional.of(userInfo), Optional.of(token.token()), refreshToken);
+    }
+
+    @Override
+    public UserRefreshResponseDto refresh(String refreshToken) {
+        // The only database work a session does between login and logout
+        Optional<Token> claimedToken = tokenStore.claimRefreshToken(refreshToken);
+        if (claimedToken.isEmpty()) {
+            return new UserRefreshResponseDto("failure", Optional.of("Invalid or expired refresh token!"), Optional.empty(), Optional.empty());
+        }
+
+        // Rotated within the same family, the access token picks up the user's current roles
+        Token token = claimedToken.get();
+        User user = token.getUser();
+        String newRefreshToken = tokenStore.issueRefreshToken(user, token.getFamily());
+        VerifiedToken accessToken = jwtService.issueAccessToken(user, token.getFamily());
+
+        return new UserRefreshResponseDto("success", Optional.empty(), Optional.of(accessToken.token()), Optional.of(newRefreshToken));
     }
 
     @Override
@@ -105,7 +177,15 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public UserSubscribeResponseDto subscribe(String token) {
-        String email = jwtService.extractEmail(token);
+        VerifiedToken verifiedToken;
+        try {
+            verifiedToken = jwtService.verify(token);
+        }
+        catch (Exception e) {
+            return new UserSubscribeResponseDto("failure", Optional.of("Invalid token!"), Optional.empty());
+        }
+
+        String email = verifiedToken.getEmail();
         Optional<User> userSearchResult = userRepository.findByEmail(email);
         if (userSearchResult.isEmpty()) {
             return new UserSubscribeResponseDto("failure", Optional.of("Invalid token!"), Optional.empty());
@@ -117,7 +197,7 @@ public class UserServiceImpl implements UserService {
             return new UserSubscribeResponseDto("failure", Optional.of("Already a premium subscriber!"), Optional.empty());
         }
 
-        Optional<Role> roleSearchResult = roleRepository.findByName(roleName);
+        Optional<Role> roleSearchResult = roleRegistry.findByName(roleName);
         if (roleSearchResult.isEmpty()) {
             System.out.println("Error: Couldn't find the role: " + roleName);
             return new UserSubscribeResponseDto("failure", Optional.of("Error during subscription!"), Optional.empty());
@@ -125,23 +205,62 @@ public class UserServiceImpl implements UserService {
 
         user.addRole(roleSearchResult.get());
 
-        Optional<Token> storedToken = tokenRepository.findByToken(token);
-        if (storedToken.isEmpty()) {
-            return new UserSubscribeResponseDto("failure", Optional.of("Invalid token!"), Optional.empty());
+        VerifiedToken newToken;
+        String sessionId = verifiedToken.getSessionId();
+        if (sessionId != null) {
+            // Access tokens aren't stored, the session stays and only the claims change.
+            // A session ended by logout must not get a fresh token.
+            if (!tokenStore.isSessionActive(sessionId)) {
+                return new UserSubscribeResponseDto("failure", Optional.of("Invalid token!"), Optional.empty());
+            }
+            newToken = jwtService.issueAccessToken(user, sessionId);
         }
-        tokenRepository.delete(storedToken.get());
+        else {
+            if (!tokenStore.delete(token)) {
+                return new UserSubscribeResponseDto("failure", Optional.of("Invalid token!"), Optional.empty());
+            }
 
-        String newToken = jwtService.generateToken(user, new HashMap<String, Object>());
-        tokenRepository.save(new Token(
-                token,
-                convertToLocalDateTime(jwtService.extractExpiration(token)),
-                TokenType.BEARER,
-                user
-        ));
+            newToken = jwtService.issueToken(user, new HashMap<String, Object>());
+            saveToken(newToken, user);
+        }
 
         userRepository.save(user);
+        userDetailsCache.invalidate(email);
 
-        return new UserSubscribeResponseDto("success", Optional.empty(), Optional.of(newToken));
+        return new UserSubscribeResponseDto("success", Optional.empty(), Optional.of(newToken.token()));
+    }
+
+    // The user was authenticated by the filter already, no need to verify the token or load the user again
+    @Override
+    public UserLogoutAllResponseDto logoutAll(String email) {
+        int revokedSessions = tokenStore.deleteAll(email);
+        return new UserLogoutAllResponseDto("success", Optional.empty(), Optional.of(revokedSessions));
+    }
+
+    // The raw password is only available here, so an outdated hash (older algorithm or lower cost) is replaced
+    // now. It runs in the background and is best effort: if the pool is busy the next login tries again.
+    private void rehashIfOutdated(User user, String password) {
+        String outdatedHash = user.getPassword();
+        if (!passwordEncoder.upgradeEncoding(outdatedHash)) {
+            return;
+        }
+
+        passwordHashingExecutor.trySubmit(() -> {
+            if (userRepository.updatePassword(user.getEmail(), outdatedHash, passwordEncoder.encode(password)) > 0) {
+                userDetailsCache.invalidate(user.getEmail());
+            }
+        });
+    }
+
+    private void saveToken(VerifiedToken token, User user) {
+        Timer.Sample sample = authMetrics.start();
+        tokenStore.save(new Token(
+                token.token(),
+                convertToLocalDateTime(token.getExpiration()),
+                TokenType.BEARER,
+                user
+        ));
+        authMetrics.stop(sample, AuthMetrics.TOKEN_PERSIST, "success");
     }
 
     private LocalDateTime convertToLocalDateTime(Date date) {
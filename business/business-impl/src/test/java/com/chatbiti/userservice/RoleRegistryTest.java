@@ -0,0 +1,73 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.chatbiti.userservice.model.*;
+
+class RoleRegistryTest {
+    private RoleRegistry roleRegistry;
+    private RoleRepository roleRepository;
+
+    @BeforeEach
+    void setUp() {
+        roleRepository = mock(RoleRepository.class);
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER")));
+        roleRegistry = new RoleRegistry(roleRepository);
+        roleRegistry.refresh();
+    }
+
+    @Test
+    void testFindByName_KnownRoleIsServedFromMemory() {
+        // Act
+        Optional<Role> role = roleRegistry.findByName("USER");
+
+        // Assert
+        assertEquals("USER", role.orElseThrow().getName());
+        verify(roleRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testFindByName_RoleAddedSinceLastRefreshIsLoaded() {
+        // Arrange
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER"), new Role("PREMIUM_USER")));
+
+        // Act
+        Optional<Role> role = roleRegistry.findByName("PREMIUM_USER");
+
+        // Assert
+        assertTrue(role.isPresent());
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testFindByName_MissingRoleReloadsOnlyOnce() {
+        // Act
+        Optional<Role> firstLookup = roleRegistry.findByName("PREMIUM_USER");
+        Optional<Role> secondLookup = roleRegistry.findByName("PREMIUM_USER");
+
+        // Assert
+        assertTrue(firstLookup.isEmpty());
+        assertTrue(secondLookup.isEmpty());
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testRefresh_ForgetsMissingRoles() {
+        // Arrange
+        roleRegistry.findByName("PREMIUM_USER");
+        when(roleRepository.findAll()).thenReturn(List.of(new Role("USER"), new Role("PREMIUM_USER")));
+
+        // Act
+        roleRegistry.refresh();
+        Optional<Role> role = roleRegistry.findByName("PREMIUM_USER");
+
+        // Assert
+        assertTrue(role.isPresent());
+    }
+}
@@ -0,0 +1,100 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.chatbiti.userservice.model.*;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+
+class TokenIntrospectionServiceImplTest {
+    private TokenIntrospectionServiceImpl tokenIntrospectionService;
+    private JwtService jwtService;
+    private TokenStore tokenStore;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = mock(JwtService.class);
+        tokenStore = mock(TokenStore.class);
+        tokenIntrospectionService = new TokenIntrospectionServiceImpl(jwtService, tokenStore, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenIntrospectionService.shutdown();
+    }
+
+    @Test
+    void testIntrospect_ReportsEachTokenInOrder() {
+        // Arrange
+        Date expiration = new Date((System.currentTimeMillis() + 309000) / 1000 * 1000);
+        when(jwtService.verify("active")).thenReturn(verifiedToken("active", "a@example.com", expiration, false));
+        when(jwtService.verify("revoked")).thenReturn(verifiedToken("revoked", "b@example.com", expiration, false));
+        when(jwtService.verify("expired")).thenReturn(verifiedToken("expired", "c@example.com", expiration, true));
+        when(jwtService.verify("malformed")).thenThrow(new MalformedJwtException("Invalid token"));
+        when(tokenStore.findActive(List.of("active", "revoked"))).thenReturn(Set.of("active"));
+
+        // Act
+        TokenIntrospectionResponseDto response = tokenIntrospectionService.introspect(
+                List.of("active", "revoked", "expired", "malformed"));
+
+        // Assert
+        assertEquals("success", response.status());
+        assertEquals(4, response.results().size());
+        TokenIntrospection active = response.results().get(0);
+        assertTrue(active.active());
+        assertEquals("a@example.com", active.subject().orElse(null));
+        assertEquals(List.of("USER"), active.authorities());
+        assertEquals(expiration.getTime() / 1000, active.expiresAt().orElse(null));
+        assertFalse(response.results().get(1).active());
+        assertFalse(response.results().get(2).active());
+        assertFalse(response.results().get(3).active());
+        assertTrue(response.results().get(1).subject().isEmpty());
+        verify(tokenStore, times(1)).findActive(anyCollection());
+    }
+
+    @Test
+    void testIntrospect_RejectsAccessTokensOfRevokedSessions() {
+        // Arrange
+        Date expiration = new Date(System.currentTimeMillis() + 309000);
+        when(jwtService.verify("live")).thenReturn(accessToken("live", "live-session", expiration));
+        when(jwtService.verify("loggedOut")).thenReturn(accessToken("loggedOut", "ended-session", expiration));
+        when(tokenStore.isSessionRevoked("live-session")).thenReturn(false);
+        when(tokenStore.isSessionRevoked("ended-session")).thenReturn(true);
+
+        // Act
+        TokenIntrospectionResponseDto response = tokenIntrospectionService.introspect(List.of("live", "loggedOut"));
+
+        // Assert
+        assertTrue(response.results().get(0).active());
+        assertFalse(response.results().get(1).active());
+        assertTrue(response.results().get(1).subject().isEmpty());
+        verify(tokenStore, never()).findActive(anyCollection());
+    }
+
+    private static VerifiedToken accessToken(String token, String sessionId, Date expiration) {
+        Claims claims = Jwts.claims()
+                .subject("a@example.com")
+                .expiration(expiration)
+                .add("authorities", List.of("USER"))
+                .add(VerifiedToken.SESSION_ID_CLAIM, sessionId)
+                .build();
+        return new VerifiedToken(token, claims, false);
+    }
+
+    private static VerifiedToken verifiedToken(String token, String email, Date expiration, boolean expired) {
+        Claims claims = Jwts.claims()
+                .subject(email)
+                .expiration(expiration)
+                .add("authorities", List.of("USER"))
+                .build();
+        return new VerifiedToken(token, claims, expired);
+    }
+}
@@ -0,0 +1,97 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.chatbiti.userservice.model.*;
+
+class UserAdminServiceImplTest {
+    private UserAdminServiceImpl userAdminService;
+    private UserRepository userRepository;
+    private RoleRegistry roleRegistry;
+    private PasswordEncoder passwordEncoder;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        roleRegistry = mock(RoleRegistry.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        when(roleRegistry.findByName("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(passwordEncoder.encode(anyString())).thenReturn("encodedPassword");
+
+        userAdminService = new UserAdminServiceImpl(userRepository, roleRegistry, passwordEncoder,
+                transactionTemplate, 10, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userAdminService.shutdown();
+    }
+
+    @Test
+    void testImportUsers_ReportsEachRowInOrder() {
+        // Arrange
+        List<UserImportEntry> entries = List.of(
+                new UserImportEntry("new@example.com", "password", "John", "Doe"),
+                new UserImportEntry("existing@example.com", "password", "Jane", "Doe"),
+                new UserImportEntry("new@example.com", "password", "John", "Again"),
+                new UserImportEntry("incomplete@example.com", null, "Jim", "Doe")
+        );
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of("existing@example.com"));
+        List<UserImportResult> results = new ArrayList<>();
+
+        // Act
+        userAdminService.importUsers(entries.iterator(), results::add);
+
+        // Assert
+        assertEquals(4, results.size());
+        assertEquals("success", results.get(0).status());
+        assertEquals("Email is already used!", results.get(1).errorMessage().orElse(null));
+        assertEquals("Email is already used!", results.get(2).errorMessage().orElse(null));
+        assertEquals("Missing required fields!", results.get(3).errorMessage().orElse(null));
+        assertEquals(List.of(1L, 2L, 3L, 4L), results.stream().map(UserImportResult::line).toList());
+        verify(userRepository, times(1)).findExistingEmails(anyCollection());
+        verify(userRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testListUsers_ReturnsCursorOnlyForFullPages() {
+        // Arrange
+        List<UserSummary> fullPage = List.of(
+                new UserSummary(7L, "a@example.com", "A", "Doe", false),
+                new UserSummary(9L, "b@example.com", "B", "Doe", false)
+        );
+        when(userRepository.findSummariesByRoleAfter(eq("ADMIN"), eq(5L), any(Pageable.class))).thenReturn(fullPage);
+        when(userRepository.findSummariesByRoleAfter(eq("ADMIN"), eq(9L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        UserPage firstPage = userAdminService.listUsers(Optional.of("ADMIN"), 5L, 2);
+        UserPage lastPage = userAdminService.listUsers(Optional.of("ADMIN"), firstPage.nextCursor().orElseThrow(), 2);
+
+        // Assert
+        assertEquals(fullPage, firstPage.users());
+        assertEquals(9L, firstPage.nextCursor().orElse(null));
+        assertTrue(lastPage.users().isEmpty());
+        assertTrue(lastPage.nextCursor().isEmpty());
+        verify(userRepository, never()).findSummariesAfter(anyLong(), any());
+    }
+}
@@ -5,36 +5,59 @@ import static org.mockito.Mockito.*;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import com.chatbiti.userservice.model.*;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 class UserServiceImplTest {
     private UserServiceImpl userService;
     private UserRepository userRepository;
-    private TokenRepository tokenRepository;
-    private RoleRepository roleRepository;
+    private TokenStore tokenStore;
+    private RoleRegistry roleRegistry;
     private PasswordEncoder passwordEncoder;
     private AuthenticationManager authenticationManager;
     private JwtService jwtService;
+    private UserDetailsCache userDetailsCache;
+    private PasswordHashingExecutor passwordHashingExecutor;
+    private LoginRateLimiter loginRateLimiter;
 
     @BeforeEach
     void setUp() {
         userRepository = mock(UserRepository.class);
-        tokenRepository = mock(TokenRepository.class);
-        roleRepository = mock(RoleRepository.class);
+        tokenStore = mock(TokenStore.class);
+        roleRegistry = mock(RoleRegistry.class);
         passwordEncoder = mock(PasswordEncoder.class);
         authenticationManager = mock(AuthenticationManager.class);
         jwtService = mock(JwtService.class);
+        userDetailsCache = mock(UserDetailsCache.class);
+        passwordHashingExecutor = mock(PasswordHashingExecutor.class);
+        when(passwordHashingExecutor.execute(any())).thenAnswer(invocation -> ((Callable<?>) invocation.getArgument(0)).call());
+        loginRateLimiter = mock(LoginRateLimiter.class);
+        when(loginRateLimiter.tryAcquire(any(), any())).thenReturn(true);
 
-        userService = new UserServiceImpl(userRepository, tokenRepository, roleRepository,
-                passwordEncoder, authenticationManager, jwtService);
+        userService = userService(false);
+    }
+
+    private UserServiceImpl userService(boolean refreshTokensEnabled) {
+        return new UserServiceImpl(userRepository, tokenStore, roleRegistry,
+                passwordEncoder, authenticationManager, jwtService, userDetailsCache, passwordHashingExecutor,
+                new AuthMetrics(new StaticListableBeanFactory(Map.<String, Object>of("meterRegistry", new SimpleMeterRegistry()))
+                        .getBeanProvider(MeterRegistry.class)), loginRateLimiter, refreshTokensEnabled);
     }
 
     @Test
@@ -45,8 +68,7 @@ class UserServiceImplTest {
         String firstName = "John";
         String lastName = "Doe";
         Role role = new Role("USER");
-        when(userRepository.existsByEmail(email)).thenReturn(false);
-        when(roleRepository.findByName("USER")).thenReturn(Optional.of(role));
+        when(roleRegistry.findByName("USER")).thenReturn(Optional.of(role));
         when(passwordEncoder.encode(password)).thenReturn("encodedPassword");
 
         // Act
@@ -55,6 +77,8 @@ class UserServiceImplTest {
         // Assert
         assertEquals("success", response.status());
         assertTrue(response.errorMessage().isEmpty());
+        verify(userRepository, never()).existsByEmail(email);
+        verify(userRepository).save(any(User.class));
     }
 
     @Test
@@ -64,7 +88,9 @@ class UserServiceImplTest {
         String password = "password";
         String firstName = "John";
         String lastName = "Doe";
-        when(userRepository.existsByEmail(email)).thenReturn(true);
+        when(roleRegistry.findByName("USER")).thenReturn(Optional.of(new Role("USER")));
+        when(passwordEncoder.encode(password)).thenReturn("encodedPassword");
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("Unique index violation"));
 
         // Act
         UserRegisterResponseDto response = userService.register(email, password, firstName, lastName);
@@ -83,17 +109,67 @@ class UserServiceImplTest {
         Authentication authentication = new UsernamePasswordAuthenticationToken(user, null);
 
         when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authentication);
-        when(jwtService.generateToken(user, new HashMap<>())).thenReturn("token");
-        when(jwtService.extractExpiration("token")).thenReturn(new Date(System.currentTimeMillis() + 309000));
+        when(jwtService.issueToken(user, new HashMap<>())).thenReturn(verifiedToken("token", email));
 
         // Act
-        UserLoginResponseDto response = userService.login(email, password);
+        UserLoginResponseDto response = userService.login(email, password, "127.0.0.1");
 
         // Assert
         assertEquals("success", response.status());
         assertTrue(response.errorMessage().isEmpty());
         assertNotNull(response.token().orElse(null));
         assertNotNull(response.userInfo().orElse(null));
+        verify(tokenStore).enforceSessionCap(user);
+    }
+
+    @Test
+    void testLogin_Success_RefreshTokens() {
+        // Arrange
+        String email = "test@example.com";
+        String password = "password";
+        User user = new User(email, password, "John", "Doe", false, List.of(new Role("USER")));
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, null);
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authentication);
+        when(tokenStore.issueRefreshToken(eq(user), anyString())).thenReturn("refresh_token");
+        when(jwtService.issueAccessToken(eq(user), anyString())).thenReturn(verifiedToken("access_token", email));
+
+        // Act
+        UserLoginResponseDto response = userService(true).login(email, password, "127.0.0.1");
+
+        // Assert
+        assertEquals("success", response.status());
+        assertEquals("access_token", response.token().orElse(null));
+        assertEquals("refresh_token", response.refreshToken().orElse(null));
+        verify(tokenStore, never()).save(any());
+        verify(tokenStore).enforceSessionCap(user);
+    }
+
+    @Test
+    void testLogin_RehashesOutdatedPassword() {
+        // Arrange
+        String email = "test@example.com";
+        String password = "password";
+        User user = new User(email, "outdatedHash", "John", "Doe", false, List.of(new Role("USER")));
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, null);
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(authentication);
+        when(jwtService.issueToken(user, new HashMap<>())).thenReturn(verifiedToken("token", email));
+        when(passwordEncoder.upgradeEncoding("outdatedHash")).thenReturn(true);
+        when(passwordEncoder.encode(password)).thenReturn("newHash");
+        when(passwordHashingExecutor.trySubmit(any())).thenAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return true;
+        });
+        when(userRepository.updatePassword(email, "outdatedHash", "newHash")).thenReturn(1);
+
+        // Act
+        UserLoginResponseDto response = userService.login(email, password, "127.0.0.1");
+
+        // Assert
+        assertEquals("success", response.status());
+        verify(userRepository).updatePassword(email, "outdatedHash", "newHash");
+        verify(userDetailsCache).invalidate(email);
     }
 
     @Test
@@ -106,7 +182,7 @@ class UserServiceImplTest {
                 .thenThrow(new RuntimeException("Invalid credentials"));
 
         // Act
-        UserLoginResponseDto response = userService.login(email, password);
+        UserLoginResponseDto response = userService.login(email, password, "127.0.0.1");
 
         // Assert
         assertEquals("failure", response.status());
@@ -115,6 +191,72 @@ class UserServiceImplTest {
         assertNull(response.userInfo().orElse(null));
     }
 
+    @Test
+    void testLogin_Failure_HashingPoolSaturated() {
+        // Arrange
+        String email = "test@example.com";
+        String password = "password";
+        when(passwordHashingExecutor.execute(any())).thenThrow(new RejectedExecutionException());
+
+        // Act
+        UserLoginResponseDto response = userService.login(email, password, "127.0.0.1");
+
+        // Assert
+        assertEquals("failure", response.status());
+        assertEquals("Server is busy, please try again later!", response.errorMessage().orElse(null));
+        verifyNoInteractions(authenticationManager);
+    }
+
+    @Test
+    void testLogin_Failure_RateLimited() {
+        // Arrange
+        String email = "test@example.com";
+        String password = "password";
+        when(loginRateLimiter.tryAcquire("127.0.0.1", email)).thenReturn(false);
+
+        // Act
+        UserLoginResponseDto response = userService.login(email, password, "127.0.0.1");
+
+        // Assert
+        assertEquals("failure", response.status());
+        assertEquals("Too many login attempts, please try again later!", response.errorMessage().orElse(null));
+        verifyNoInteractions(authenticationManager, passwordHashingExecutor);
+    }
+
+    @Test
+    void testRefresh_Success_RotatesWithinFamily() {
+        // Arrange
+        User user = new User("test@example.com", "password", "John", "Doe", false, List.of(new Role("USER")));
+        Token claimedToken = new Token("refresh_token", LocalDateTime.now().plusDays(1), TokenType.REFRESH, user, "family");
+        when(tokenStore.claimRefreshToken("refresh_token")).thenReturn(Optional.of(claimedToken));
+        when(tokenStore.issueRefreshToken(user, "family")).thenReturn("new_refresh_token");
+        when(jwtService.issueAccessToken(user, "family")).thenReturn(verifiedToken("access_token", user.getEmail()));
+
+        // Act
+        UserRefreshResponseDto response = userService(true).refresh("refresh_token");
+
+        // Assert
+        assertEquals("success", response.status());
+        assertEquals("access_token", response.token().orElse(null));
+        assertEquals("new_refresh_token", response.refreshToken().orElse(null));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testRefresh_Failure_ReusedOrUnknownToken() {
+        // Arrange
+        when(tokenStore.claimRefreshToken("refresh_token")).thenReturn(Optional.empty());
+
+        // Act
+        UserRefreshResponseDto response = userService(true).refresh("refresh_token");
+
+        // Assert
+        assertEquals("failure", response.status());
+        assertEquals("Invalid or expired refresh token!", response.errorMessage().orElse(null));
+        verify(tokenStore, never()).issueRefreshToken(any(), any());
+        verify(jwtService, never()).issueAccessToken(any(), any());
+    }
+
     @Test
     void testAuthenticate() {
         // Act
@@ -130,12 +272,11 @@ class UserServiceImplTest {
         // Arrange
         String token = "valid_token";
         User user = new User("test@example.com", "password", "John", "Doe", false, new ArrayList<>(List.of(new Role("USER"))));
-        when(jwtService.extractEmail(token)).thenReturn(user.getEmail());
+        when(jwtService.verify(token)).thenReturn(verifiedToken(token, user.getEmail()));
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(roleRepository.findByName("PREMIUM_USER")).thenReturn(Optional.of(new Role("PREMIUM_USER")));
-        when(tokenRepository.findByToken(token)).thenReturn(Optional.of(new Token(token, LocalDateTime.now(), TokenType.BEARER, user)));
-        when(jwtService.generateToken(user, new HashMap<>())).thenReturn("new_token");
-        when(jwtService.extractExpiration("valid_token")).thenReturn(new Date(System.currentTimeMillis() + 309000));
+        when(roleRegistry.findByName("PREMIUM_USER")).thenReturn(Optional.of(new Role("PREMIUM_USER")));
+        when(tokenStore.delete(token)).thenReturn(true);
+        when(jwtService.issueToken(user, new HashMap<>())).thenReturn(verifiedToken("new_token", user.getEmail()));
 
         // Act
         UserSubscribeResponseDto response = userService.subscribe(token);
@@ -144,13 +285,55 @@ class UserServiceImplTest {
         assertEquals("success", response.status());
         assertFalse(response.errorMessage().isPresent());
         assertTrue(response.newToken().isPresent());
+        verify(userDetailsCache).invalidate(user.getEmail());
+    }
+
+    @Test
+    void testSubscribe_Success_AccessTokenKeepsSession() {
+        // Arrange
+        String token = "access_token";
+        User user = new User("test@example.com", "password", "John", "Doe", false, new ArrayList<>(List.of(new Role("USER"))));
+        when(jwtService.verify(token)).thenReturn(new VerifiedToken(token, sessionClaims(user.getEmail(), "family"), false));
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(roleRegistry.findByName("PREMIUM_USER")).thenReturn(Optional.of(new Role("PREMIUM_USER")));
+        when(tokenStore.isSessionActive("family")).thenReturn(true);
+        when(jwtService.issueAccessToken(user, "family")).thenReturn(verifiedToken("new_access_token", user.getEmail()));
+
+        // Act
+        UserSubscribeResponseDto response = userService.subscribe(token);
+
+        // Assert
+        assertEquals("success", response.status());
+        assertEquals("new_access_token", response.newToken().orElse(null));
+        verify(tokenStore, never()).delete(any());
+        verify(tokenStore, never()).save(any());
+    }
+
+    @Test
+    void testSubscribe_Failure_SessionEnded() {
+        // Arrange
+        String token = "access_token";
+        User user = new User("test@example.com", "password", "John", "Doe", false, new ArrayList<>(List.of(new Role("USER"))));
+        when(jwtService.verify(token)).thenReturn(new VerifiedToken(token, sessionClaims(user.getEmail(), "family"), false));
+        when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(roleRegistry.findByName("PREMIUM_USER")).thenReturn(Optional.of(new Role("PREMIUM_USER")));
+        when(tokenStore.isSessionActive("family")).thenReturn(false);
+
+        // Act
+        UserSubscribeResponseDto response = userService.subscribe(token);
+
+        // Assert
+        assertEquals("failure", response.status());
+        assertEquals("Invalid token!", response.errorMessage().orElse(null));
+        verify(jwtService, never()).issueAccessToken(any(), any());
+        verify(userRepository, never()).save(any());
     }
 
     @Test
     void testSubscribe_Failure_InvalidToken() {
         // Arrange
         String token = "invalid_token";
-        when(jwtService.extractEmail(token)).thenReturn(null);
+        when(jwtService.verify(token)).thenThrow(new MalformedJwtException("Invalid token"));
 
         // Act
         UserSubscribeResponseDto response = userService.subscribe(token);
@@ -166,7 +349,7 @@ class UserServiceImplTest {
         // Arrange
         String token = "valid_token";
         User user = new User("test@example.com", "password", "John", "Doe", false, List.of(new Role("PREMIUM_USER")));
-        when(jwtService.extractEmail(token)).thenReturn(user.getEmail());
+        when(jwtService.verify(token)).thenReturn(verifiedToken(token, user.getEmail()));
         when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
 
         // Act
@@ -177,4 +360,36 @@ class UserServiceImplTest {
         assertTrue(response.errorMessage().isPresent());
         assertFalse(response.newToken().isPresent());
     }
+
+    @Test
+    void testLogoutAll_Success() {
+        // Arrange
+        String email = "test@example.com";
+        when(tokenStore.deleteAll(email)).thenReturn(3);
+
+        // Act
+        UserLogoutAllResponseDto response = userService.logoutAll(email);
+
+        // Assert
+        assertEquals("success", response.status());
+        assertFalse(response.errorMessage().isPresent());
+        assertEquals(3, response.revokedSessions().orElse(null));
+        verifyNoInteractions(jwtService, userRepository);
+    }
+
+    private static Claims sessionClaims(String email, String sessionId) {
+        return Jwts.claims()
+                .subject(email)
+                .expiration(new Date(System.currentTimeMillis() + 309000))
+                .add(VerifiedToken.SESSION_ID_CLAIM, sessionId)
+                .build();
+    }
+
+    private static VerifiedToken verifiedToken(String token, String email) {
+        Claims claims = Jwts.claims()
+                .subject(email)
+                .expiration(new Date(System.currentTimeMillis() + 309000))
+                .build();
+        return new VerifiedToken(token, claims, false);
+    }
 }
@@ -0,0 +1,20 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.RevokedSession;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedSessionRepository extends CrudRepository<RevokedSession, String> {
+    List<RevokedSession> findAllByExpiresAtAfter(LocalDateTime dateTime);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RevokedSession s where s.expiresAt <= :dateTime")
+    int deleteExpired(@Param("dateTime") LocalDateTime dateTime);
+}
@@ -0,0 +1,20 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.SigningKey;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SigningKeyRepository extends CrudRepository<SigningKey, String> {
+    List<SigningKey> findAllByOrderByActivatesAtAsc();
+
+    @Modifying
+    @Transactional
+    @Query("delete from SigningKey k where k.kid in :kids")
+    int deleteByKidIn(@Param("kids") Collection<String> kids);
+}
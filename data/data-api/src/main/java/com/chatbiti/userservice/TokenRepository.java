@@ -1,12 +1,77 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.Token;
+import com.chatbiti.userservice.model.TokenExpiration;
+import com.chatbiti.userservice.model.TokenSession;
+import com.chatbiti.userservice.model.TokenType;
+import com.chatbiti.userservice.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface TokenRepository extends CrudRepository<Token, Long> {
-    Optional<Token> findByToken(String token);
+    Optional<Token> findByTokenDigest(String tokenDigest);
 
-    boolean existsByToken(String token);
+    boolean existsByTokenDigest(String tokenDigest);
+
+    boolean existsByFamily(String family);
+
+    @Query("select new com.chatbiti.userservice.model.TokenExpiration(t.tokenDigest, t.user.email, t.expirationDate) " +
+           "from Token t where t.tokenDigest in :tokenDigests")
+    List<TokenExpiration> findExpirationsByTokenDigestIn(@Param("tokenDigests") Collection<String> tokenDigests);
+
+    List<Token> findAllByTokenTypeAndExpirationDateAfter(TokenType tokenType, LocalDateTime dateTime);
+
+    // Rotated refresh tokens are no session of their own
+    @Query("select count(t) from Token t where t.user = :user and t.used = false")
+    long countSessionsByUser(@Param("user") User user);
+
+    @Query("select new com.chatbiti.userservice.model.TokenSession(t.tokenDigest, t.family) from Token t " +
+           "where t.user = :user and t.used = false order by t.creationDate, t.id")
+    List<TokenSession> findOldestSessionsByUser(@Param("user") User user, Pageable pageable);
+
+    @Query("select distinct t.family from Token t where t.user.email = :email and t.family is not null")
+    List<String> findFamiliesByUserEmail(@Param("email") String email);
+
+    // Returns 0 if the token was used already (or doesn't exist), so exactly one caller can exchange it
+    @Modifying
+    @Transactional
+    @Query("update Token t set t.used = true where t.tokenDigest = :tokenDigest and t.used = false")
+    int markUsed(@Param("tokenDigest") String tokenDigest);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Token t where t.family = :family")
+    int deleteByFamily(@Param("family") String family);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Token t where t.tokenDigest = :tokenDigest")
+    int deleteByTokenDigest(@Param("tokenDigest") String tokenDigest);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Token t where t.user in (select u from User u where u.email = :email)")
+    int deleteByUserEmail(@Param("email") String email);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Token t where t.tokenDigest in :tokenDigests")
+    int deleteByTokenDigestIn(@Param("tokenDigests") Collection<String> tokenDigests);
+
+    @Query("select t.id from Token t where t.expirationDate < :dateTime order by t.id")
+    List<Long> findExpiredIds(@Param("dateTime") LocalDateTime dateTime, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Token t where t.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -1,13 +1,58 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.User;
+import com.chatbiti.userservice.model.UserSummary;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface UserRepository extends CrudRepository<User, Long> {
     boolean existsByEmail(String email);
     Optional<User> findByEmail(String email);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Only replaces the hash it was computed from, a password changed in the meantime wins
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword where u.email = :email and u.password = :oldPassword")
+    int updatePassword(@Param("email") String email,
+                       @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword);
+
+    // Keyset pagination: seeks past the last id of the previous page on the primary key index,
+    // so every page costs the same no matter how deep it is
+    @Query("select new com.chatbiti.userservice.model.UserSummary(u.id, u.email, u.firstName, u.lastName, u.emailVerified) " +
+           "from User u where u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select new com.chatbiti.userservice.model.UserSummary(u.id, u.email, u.firstName, u.lastName, u.emailVerified) " +
+           "from User u join u.roles r where r.name = :role and u.id > :afterId order by u.id")
+    List<UserSummary> findSummariesByRoleAfter(@Param("role") String role, @Param("afterId") long afterId, Pageable pageable);
+
+    // Must be consumed (and closed) inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.chatbiti.userservice.model.UserSummary(u.id, u.email, u.firstName, u.lastName, u.emailVerified) " +
+           "from User u order by u.id")
+    Stream<UserSummary> streamSummaries();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.chatbiti.userservice.model.UserSummary(u.id, u.email, u.firstName, u.lastName, u.emailVerified) " +
+           "from User u join u.roles r where r.name = :role order by u.id")
+    Stream<UserSummary> streamSummariesByRole(@Param("role") String role);
 }
@@ -0,0 +1,28 @@
+package com.chatbiti.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// A login session (refresh token family) ended before its access tokens expired, see SessionDenylist
+@Getter
+@Entity
+@Table(name = "revoked_session")
+public class RevokedSession {
+    @Id
+    @Column(length = 36)
+    private String sessionId;
+
+    // When the last access token of the session has expired and this entry can go
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public RevokedSession(String sessionId, LocalDateTime expiresAt) {
+        this.sessionId = sessionId;
+        this.expiresAt = expiresAt;
+    }
+
+    public RevokedSession() {
+    }
+}
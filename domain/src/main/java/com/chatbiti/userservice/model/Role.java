@@ -1,8 +1,11 @@
 package com.chatbiti.userservice.model;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.List;
 import java.util.Objects;
@@ -23,6 +26,11 @@ public class Role {
     @ManyToMany(mappedBy = "roles")
     private List<User> users;
 
+    // Derived from the name, never set on its own
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private GrantedAuthority authority;
+
     public Role() {
 
     }
@@ -31,6 +39,18 @@ public class Role {
         this.name = name;
     }
 
+    public void setName(String name) {
+        this.name = name;
+        this.authority = null;
+    }
+
+    public GrantedAuthority getAuthority() {
+        if (authority == null) {
+            authority = new SimpleGrantedAuthority(name);
+        }
+        return authority;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,49 @@
+package com.chatbiti.userservice.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// One entry of the token signing key ring. Keys are stored as base64 DER (the HMAC secret itself for HS256).
+// The private part is encrypted when a key-encryption key is configured (see SigningKeyCipher), otherwise
+// access to this table is as sensitive as access to the keys.
+@Getter
+@Entity
+@Table(name = "signing_key")
+public class SigningKey {
+    @Id
+    @Column(length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 16)
+    private String algorithm;
+
+    @Column(nullable = false, length = 1024)
+    private String privateKey;
+
+    // Null for HS256
+    @Column(length = 1024)
+    private String publicKey;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Published (JWKS, verification) from creation but only used for signing from here on,
+    // by then every instance has picked it up
+    @Column(nullable = false)
+    private LocalDateTime activatesAt;
+
+    public SigningKey(String kid, String algorithm, String privateKey, String publicKey,
+                      LocalDateTime createdAt, LocalDateTime activatesAt) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.createdAt = createdAt;
+        this.activatesAt = activatesAt;
+    }
+
+    public SigningKey() {
+    }
+}
@@ -9,12 +9,19 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_token_expiration_date", columnList = "expirationDate"),
+        @Index(name = "idx_token_family", columnList = "family")
+})
 public class Token {
     @Id
     @GeneratedValue
     private Long id;
 
-    private String token;
+    // Only the SHA-256 digest of the JWT is stored; it is fixed-size and indexed by the unique constraint
+    @Column(unique = true, nullable = false, length = 64)
+    private String tokenDigest;
+
     private LocalDateTime creationDate;
     private LocalDateTime expirationDate;
 
@@ -25,12 +32,36 @@ public class Token {
     @JoinColumn(name = "\"user_id\"", nullable = false)
     private User user;
 
+    // Refresh tokens only: the login session they belong to, shared by every token rotated out of it
+    @Column(length = 36)
+    private String family;
+
+    // Refresh tokens only: already exchanged, kept so a replay of it can be detected
+    @Column(nullable = false)
+    private boolean used;
+
     public Token(String token, LocalDateTime expirationDate, TokenType tokenType, User user) {
-        this.token = token;
+        this(token, expirationDate, tokenType, user, null);
+    }
+
+    public Token(String token, LocalDateTime expirationDate, TokenType tokenType, User user, String family) {
+        this.tokenDigest = TokenDigest.of(token);
         this.creationDate = LocalDateTime.now();
         this.expirationDate = expirationDate;
         this.tokenType = tokenType;
         this.user = user;
+        this.family = family;
+    }
+
+    // A copy without the id, for inserting again after a transaction that assigned one was rolled back
+    public Token(Token token) {
+        this.tokenDigest = token.tokenDigest;
+        this.creationDate = token.creationDate;
+        this.expirationDate = token.expirationDate;
+        this.tokenType = token.tokenType;
+        this.user = token.user;
+        this.family = token.family;
+        this.used = token.used;
     }
 
     public Token() {
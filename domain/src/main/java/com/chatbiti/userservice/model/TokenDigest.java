@@ -0,0 +1,22 @@
+package com.chatbiti.userservice.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Fixed-width (64 hex chars) SHA-256 fingerprint of a token, used instead of the raw JWT as a lookup key
+public final class TokenDigest {
+    private TokenDigest() {
+    }
+
+    public static String of(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to ship SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.chatbiti.userservice.model;
+
+import java.time.LocalDateTime;
+
+public record TokenExpiration(String tokenDigest, String email, LocalDateTime expirationDate) {
+}
@@ -0,0 +1,9 @@
+package com.chatbiti.userservice.model;
+
+import java.util.List;
+import java.util.Optional;
+
+// Like RFC 7662, an inactive token (bad signature, expired, revoked) gets nothing but active = false.
+// expiresAt is in epoch seconds, the same as the token's exp claim.
+public record TokenIntrospection(boolean active, Optional<String> subject, List<String> authorities, Optional<Long> expiresAt) {
+}
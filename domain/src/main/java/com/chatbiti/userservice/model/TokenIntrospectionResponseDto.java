@@ -0,0 +1,8 @@
+package com.chatbiti.userservice.model;
+
+import java.util.List;
+import java.util.Optional;
+
+// One result per requested token, in request order
+public record TokenIntrospectionResponseDto(String status, Optional<String> errorMessage, List<TokenIntrospection> results) {
+}
@@ -0,0 +1,5 @@
+package com.chatbiti.userservice.model;
+
+// One session of a user: a persisted bearer token, or the refresh token currently open in a family
+public record TokenSession(String tokenDigest, String family) {
+}
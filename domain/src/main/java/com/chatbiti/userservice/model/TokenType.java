@@ -2,5 +2,6 @@ package com.chatbiti.userservice.model;
 
 public enum TokenType {
     BEARER,
-    EMAIL
+    EMAIL,
+    REFRESH
 }
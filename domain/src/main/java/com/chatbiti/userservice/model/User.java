@@ -3,21 +3,24 @@ package com.chatbiti.userservice.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.security.Principal;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Entity
 @Table(name = "\"user\"")
 public class User implements UserDetails, Principal {
 
+    // A pooled sequence instead of IDENTITY lets Hibernate batch inserts (see bulk import)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique=true)
@@ -37,11 +40,18 @@ public class User implements UserDetails, Principal {
     private Boolean emailVerified;
 
     @ManyToMany(fetch = FetchType.EAGER)
+    @JoinTable(name = "user_role",
+               joinColumns = @JoinColumn(name = "user_id"),
+               inverseJoinColumns = @JoinColumn(name = "role_id"))
     private List<Role> roles;
 
     @OneToMany(mappedBy = "user")
     private List<Token> tokens;
 
+    // Built once from the roles and reset whenever they change, the auth hot paths read it on every request
+    @Transient
+    private Set<GrantedAuthority> authorities;
+
     public User() {}
 
     public User(String email, String password, String firstName, String lastName, Boolean emailVerified, List<Role> roles) {
@@ -56,6 +66,7 @@ public class User implements UserDetails, Principal {
 
     public void addRole(Role role) {
         roles.add(role);
+        authorities = null;
     }
 
     @Override
@@ -80,7 +91,16 @@ public class User implements UserDetails, Principal {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return roles.stream().map(role -> new SimpleGrantedAuthority(role.getName())).collect(Collectors.toList());
+        Set<GrantedAuthority> currentAuthorities = authorities;
+        if (currentAuthorities == null) {
+            Set<GrantedAuthority> builtAuthorities = new LinkedHashSet<>();
+            for (Role role : roles) {
+                builtAuthorities.add(role.getAuthority());
+            }
+            currentAuthorities = Collections.unmodifiableSet(builtAuthorities);
+            authorities = currentAuthorities;
+        }
+        return currentAuthorities;
     }
 
     @Override
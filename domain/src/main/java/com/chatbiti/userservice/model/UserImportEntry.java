@@ -0,0 +1,4 @@
+package com.chatbiti.userservice.model;
+
+public record UserImportEntry(String email, String password, String firstName, String lastName) {
+}
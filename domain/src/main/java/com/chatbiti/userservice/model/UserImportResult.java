@@ -0,0 +1,6 @@
+package com.chatbiti.userservice.model;
+
+import java.util.Optional;
+
+public record UserImportResult(long line, String email, String status, Optional<String> errorMessage) {
+}
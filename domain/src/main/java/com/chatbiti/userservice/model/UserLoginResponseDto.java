@@ -6,5 +6,6 @@ import java.util.Optional;
 public record UserLoginResponseDto(String status,
                                    Optional<String> errorMessage,
                                    Optional<UserInfo> userInfo,
-                                   Optional<String> token) {
+                                   Optional<String> token,
+                                   Optional<String> refreshToken) {
 }
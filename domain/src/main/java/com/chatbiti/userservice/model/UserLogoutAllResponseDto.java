@@ -0,0 +1,6 @@
+package com.chatbiti.userservice.model;
+
+import java.util.Optional;
+
+public record UserLogoutAllResponseDto(String status, Optional<String> errorMessage, Optional<Integer> revokedSessions) {
+}
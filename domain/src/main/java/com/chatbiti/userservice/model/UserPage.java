@@ -0,0 +1,8 @@
+package com.chatbiti.userservice.model;
+
+import java.util.List;
+import java.util.Optional;
+
+// nextCursor is the id to pass as "after" for the following page, empty on the last one
+public record UserPage(List<UserSummary> users, Optional<Long> nextCursor) {
+}
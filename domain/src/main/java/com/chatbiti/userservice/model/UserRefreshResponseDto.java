@@ -0,0 +1,9 @@
+package com.chatbiti.userservice.model;
+
+import java.util.Optional;
+
+public record UserRefreshResponseDto(String status,
+                                     Optional<String> errorMessage,
+                                     Optional<String> token,
+                                     Optional<String> refreshToken) {
+}
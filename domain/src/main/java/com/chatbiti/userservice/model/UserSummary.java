@@ -0,0 +1,4 @@
+package com.chatbiti.userservice.model;
+
+public record UserSummary(Long id, String email, String firstName, String lastName, Boolean emailVerified) {
+}
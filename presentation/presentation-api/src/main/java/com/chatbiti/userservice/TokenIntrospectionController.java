@@ -0,0 +1,8 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.TokenIntrospectionRequest;
+import com.chatbiti.userservice.model.TokenIntrospectionResponseDto;
+
+public interface TokenIntrospectionController {
+    public TokenIntrospectionResponseDto introspect(TokenIntrospectionRequest introspectionRequest);
+}
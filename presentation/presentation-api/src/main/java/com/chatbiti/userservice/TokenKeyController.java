@@ -0,0 +1,9 @@
+package com.chatbiti.userservice;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+public interface TokenKeyController {
+    public ResponseEntity<Map<String, Object>> getJsonWebKeySet();
+}
@@ -0,0 +1,16 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.UserPage;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+public interface UserAdminController {
+    public void importUsers(InputStream requestBody, HttpServletResponse response) throws IOException;
+
+    public UserPage listUsers(Optional<String> role, long after, int limit);
+
+    public void exportUsers(Optional<String> role, HttpServletResponse response) throws IOException;
+}
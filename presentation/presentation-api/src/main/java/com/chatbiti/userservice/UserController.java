@@ -1,13 +1,20 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.*;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.security.Principal;
 
 public interface UserController {
     public UserRegisterResponseDto register(UserRegisterRequest registerRequest);
 
-    public UserLoginResponseDto login(UserLoginRequest loginRequest);
+    public UserLoginResponseDto login(UserLoginRequest loginRequest, HttpServletRequest request);
+
+    public UserRefreshResponseDto refresh(UserRefreshRequest refreshRequest);
 
     public UserAuthResponseDto authenticate();
 
     public UserSubscribeResponseDto subscribe(String authorizationHeader);
+
+    public UserLogoutAllResponseDto logoutAll(Principal principal);
 }
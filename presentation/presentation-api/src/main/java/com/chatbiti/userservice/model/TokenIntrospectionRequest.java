@@ -0,0 +1,11 @@
+package com.chatbiti.userservice.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record TokenIntrospectionRequest(@NotNull
+                                        @Size(max = 1000)
+                                         List<@NotNull String> tokens) {
+}
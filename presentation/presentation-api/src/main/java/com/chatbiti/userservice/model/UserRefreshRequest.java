@@ -0,0 +1,7 @@
+package com.chatbiti.userservice.model;
+
+import jakarta.validation.constraints.NotNull;
+
+public record UserRefreshRequest(@NotNull
+                                 String refreshToken) {
+}
@@ -0,0 +1,27 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.TokenIntrospectionRequest;
+import com.chatbiti.userservice.model.TokenIntrospectionResponseDto;
+import jakarta.validation.Valid;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+// For gateways: checks a whole batch of client tokens in one call instead of one /authenticate call each.
+// The caller authenticates with its own token, which needs the GATEWAY (or ADMIN) role.
+@RestController
+public class TokenIntrospectionControllerImpl implements TokenIntrospectionController {
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    public TokenIntrospectionControllerImpl(TokenIntrospectionService tokenIntrospectionService) {
+        this.tokenIntrospectionService = tokenIntrospectionService;
+    }
+
+    @Override
+    @Secured({"GATEWAY", "ADMIN"})
+    @PostMapping("/v1/user/introspect")
+    public TokenIntrospectionResponseDto introspect(@RequestBody @Valid TokenIntrospectionRequest introspectionRequest) {
+        return tokenIntrospectionService.introspect(introspectionRequest.tokens());
+    }
+}
@@ -0,0 +1,38 @@
+package com.chatbiti.userservice;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Lets other services verify tokens locally instead of calling /v1/user/authenticate.
+// Consumers cache the set and refetch it when they see an unknown key id.
+@RestController
+public class TokenKeyControllerImpl implements TokenKeyController {
+    private static final MediaType JWK_SET = MediaType.valueOf("application/jwk-set+json");
+
+    private TokenKeyService tokenKeyService;
+
+    // SigningKeyRing makes sure a new key is only used for signing once every cached set has it
+    private CacheControl cacheControl;
+
+    public TokenKeyControllerImpl(TokenKeyService tokenKeyService,
+                                  @Value("${application.security.signing.jwks-max-age}") Duration jwksMaxAge) {
+        this.tokenKeyService = tokenKeyService;
+        this.cacheControl = CacheControl.maxAge(jwksMaxAge).cachePublic();
+    }
+
+    @Override
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJsonWebKeySet() {
+        return ResponseEntity.ok()
+                .contentType(JWK_SET)
+                .cacheControl(cacheControl)
+                .body(tokenKeyService.getJsonWebKeySet());
+    }
+}
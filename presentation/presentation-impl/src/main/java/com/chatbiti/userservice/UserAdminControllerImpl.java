@@ -0,0 +1,89 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.UserImportEntry;
+import com.chatbiti.userservice.model.UserPage;
+import com.chatbiti.userservice.model.UserRegisterRequest;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@RestController
+@RequestMapping("/v1/user/admin")
+public class UserAdminControllerImpl implements UserAdminController {
+    private static final String NDJSON = "application/x-ndjson";
+
+    private UserAdminService userAdminService;
+
+    private ObjectMapper mapper;
+
+    public UserAdminControllerImpl(UserAdminService userAdminService, ObjectMapper mapper) {
+        this.userAdminService = userAdminService;
+        this.mapper = mapper;
+    }
+
+    // Reads one registration per line and streams back one result per line,
+    // so neither the input nor the report is ever held in memory as a whole
+    @Override
+    @Secured("ADMIN")
+    @PostMapping(value = "/import", consumes = NDJSON, produces = NDJSON)
+    public void importUsers(InputStream requestBody, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        MappingIterator<UserRegisterRequest> rows = mapper.readerFor(UserRegisterRequest.class).readValues(requestBody);
+        Iterator<UserImportEntry> entries = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public UserImportEntry next() {
+                UserRegisterRequest row = rows.next();
+                return new UserImportEntry(row.email(), row.password(), row.firstName(), row.lastName());
+            }
+        };
+
+        try (SequenceWriter results = mapper.writer().withRootValueSeparator("\n").writeValues(response.getOutputStream())) {
+            userAdminService.importUsers(entries, writingTo(results));
+        }
+    }
+
+    @Override
+    @Secured("ADMIN")
+    @GetMapping("/users")
+    public UserPage listUsers(@RequestParam Optional<String> role,
+                              @RequestParam(defaultValue = "0") long after,
+                              @RequestParam(defaultValue = "100") int limit) {
+        return userAdminService.listUsers(role, after, limit);
+    }
+
+    // One user per line, written as the rows come off the database cursor
+    @Override
+    @Secured("ADMIN")
+    @GetMapping(value = "/users/export", produces = NDJSON)
+    public void exportUsers(@RequestParam Optional<String> role, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        try (SequenceWriter users = mapper.writer().withRootValueSeparator("\n").writeValues(response.getOutputStream())) {
+            userAdminService.exportUsers(role, writingTo(users));
+        }
+    }
+
+    private static <T> Consumer<T> writingTo(SequenceWriter writer) {
+        return value -> {
+            try {
+                writer.write(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
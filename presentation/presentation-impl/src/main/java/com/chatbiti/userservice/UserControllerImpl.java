@@ -1,9 +1,11 @@
 package com.chatbiti.userservice;
 
 import com.chatbiti.userservice.model.*;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.Optional;
 
 @RestController
@@ -26,8 +28,14 @@ public class UserControllerImpl implements UserController {
 
     @Override
     @PostMapping("/login")
-    public UserLoginResponseDto login(@RequestBody @Valid UserLoginRequest loginRequest) {
-        return userService.login(loginRequest.email(), loginRequest.password());
+    public UserLoginResponseDto login(@RequestBody @Valid UserLoginRequest loginRequest, HttpServletRequest request) {
+        return userService.login(loginRequest.email(), loginRequest.password(), request.getRemoteAddr());
+    }
+
+    @Override
+    @PostMapping("/refresh")
+    public UserRefreshResponseDto refresh(@RequestBody @Valid UserRefreshRequest refreshRequest) {
+        return userService.refresh(refreshRequest.refreshToken());
     }
 
     @Override
@@ -48,4 +56,15 @@ public class UserControllerImpl implements UserController {
         String token = authorizationHeader.substring(7);
         return userService.subscribe(token);
     }
+
+    @Override
+    @PostMapping("/logout-all")
+    public UserLogoutAllResponseDto logoutAll(Principal principal) {
+        // The authenticated user from the security context, set by the authentication filter
+        if (principal == null) {
+            return new UserLogoutAllResponseDto("failure", Optional.of("Unauthorised!"), Optional.empty());
+        }
+
+        return userService.logoutAll(principal.getName());
+    }
 }
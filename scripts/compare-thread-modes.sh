@@ -0,0 +1,45 @@
+#!/bin/sh
+# Compares /v1/user/authenticate and /v1/user/login throughput with the default Tomcat
+# platform-thread pool against virtual threads (spring.threads.virtual.enabled).
+# Requires `hey` (https://github.com/rakyll/hey) and `curl` on the PATH.
+set -e
+
+./gradlew -q :app:bootJar
+APP_JAR=$(ls app/build/libs/app-*.jar | grep -v plain)
+
+DURATION=${DURATION:-30s}
+CONCURRENCY=${CONCURRENCY:-400}
+BASE_URL=http://localhost:8080/v1/user
+
+wait_for_app() {
+    until curl -s -o /dev/null "$BASE_URL/login" -X POST -H 'Content-Type: application/json' -d '{}'; do
+        sleep 1
+    done
+}
+
+run_mode() {
+    java -jar "$APP_JAR" --spring.threads.virtual.enabled="$1" --spring.jpa.show-sql=false \
+        --application.security.login-rate-limit.enabled=false > /dev/null 2>&1 &
+    APP_PID=$!
+    wait_for_app
+
+    curl -s -X POST "$BASE_URL/register" -H 'Content-Type: application/json' \
+        -d '{"email":"bench@example.com","password":"password","firstName":"Bench","lastName":"User"}' > /dev/null
+    TOKEN=$(curl -s -X POST "$BASE_URL/login" -H 'Content-Type: application/json' \
+        -d '{"email":"bench@example.com","password":"password"}' | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+
+    echo "== virtual threads: $1 =="
+    echo "-- authenticate"
+    hey -z "$DURATION" -c "$CONCURRENCY" -m POST -H "Authorization: Bearer $TOKEN" "$BASE_URL/authenticate" \
+        | grep -E 'Requests/sec|99% in'
+    echo "-- login"
+    hey -z "$DURATION" -c "$CONCURRENCY" -m POST -T 'application/json' \
+        -d '{"email":"bench@example.com","password":"password"}' "$BASE_URL/login" \
+        | grep -E 'Requests/sec|99% in'
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null || true
+}
+
+run_mode false
+run_mode true
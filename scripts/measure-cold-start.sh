@@ -0,0 +1,69 @@
+#!/bin/sh
+# Measures time from process launch to the first successful /v1/user/authenticate, and the resident memory at that
+# point, for the baseline start (java -jar) and the tuned one (AppCDS archive + fast-startup profile).
+# Needs GNU date (nanoseconds) and curl. Both modes share one file-backed database, so the token issued once up front
+# stays valid across the restarts.
+set -e
+
+./gradlew -q :app:bootJar :app:appCdsArchive
+APP_JAR=$(pwd)/$(ls app/build/libs/app-*.jar | grep -v plain)
+CDS_DIR=$(pwd)/app/build/cds
+
+RUNS=${RUNS:-5}
+DB_DIR=$(mktemp -d)
+DB_ARGS="--spring.datasource.url=jdbc:h2:file:$DB_DIR/userdb --spring.jpa.show-sql=false"
+BASE_URL=http://localhost:8080/v1/user
+
+start_baseline() {
+    java -jar "$APP_JAR" $DB_ARGS > "$DB_DIR/app.log" 2>&1 &
+    APP_PID=$!
+}
+
+start_tuned() {
+    (cd "$CDS_DIR/app" && exec java -XX:SharedArchiveFile=../app.jsa @classpath.args com.chatbiti.userservice.UserServiceApp \
+        --spring.profiles.active=fast-startup $DB_ARGS) > "$DB_DIR/app.log" 2>&1 &
+    APP_PID=$!
+}
+
+stop_app() {
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null || true
+}
+
+# Prints "<milliseconds to first successful authenticate> <resident memory in MB>"
+measure_once() {
+    START=$(date +%s%N)
+    $1
+    until curl -s -X POST -H "Authorization: Bearer $TOKEN" "$BASE_URL/authenticate" 2>/dev/null | grep -q '"status":"success"'; do
+        sleep 0.01
+    done
+    END=$(date +%s%N)
+    RSS_KB=$(ps -o rss= -p $APP_PID)
+    echo "$(( (END - START) / 1000000 )) ms $(( RSS_KB / 1024 )) MB"
+    stop_app
+}
+
+run_mode() {
+    echo "== $1 =="
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        measure_once "$2"
+        i=$((i + 1))
+    done
+}
+
+# One start to create the schema and a session to authenticate with
+start_baseline
+until curl -s -o /dev/null "$BASE_URL/login" -X POST -H 'Content-Type: application/json' -d '{}'; do
+    sleep 0.1
+done
+curl -s -X POST "$BASE_URL/register" -H 'Content-Type: application/json' \
+    -d '{"email":"startup@example.com","password":"password","firstName":"Startup","lastName":"User"}' > /dev/null
+TOKEN=$(curl -s -X POST "$BASE_URL/login" -H 'Content-Type: application/json' \
+    -d '{"email":"startup@example.com","password":"password"}' | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+stop_app
+
+run_mode "baseline (java -jar)" start_baseline
+run_mode "tuned (AppCDS + fast-startup profile)" start_tuned
+
+rm -rf "$DB_DIR"
@@ -0,0 +1,47 @@
+#!/bin/sh
+# Compares startup time of the old schema setup (in-memory H2, schema generated by Hibernate on every start)
+# with the Flyway-managed file-backed database, where a restart only checks the migration history.
+# Prints the "Started UserServiceApp in X seconds" time of each run.
+set -e
+
+./gradlew -q :app:bootJar
+APP_JAR=$(ls app/build/libs/app-*.jar | grep -v plain)
+
+RUNS=${RUNS:-5}
+DB_DIR=$(mktemp -d)
+LOG=$DB_DIR/app.log
+
+start_once() {
+    java -jar "$APP_JAR" --spring.jpa.show-sql=false "$@" > "$LOG" 2>&1 &
+    APP_PID=$!
+    until grep -q 'Started UserServiceApp' "$LOG"; do
+        if ! kill -0 $APP_PID 2>/dev/null; then
+            cat "$LOG"
+            exit 1
+        fi
+        sleep 0.2
+    done
+    sed -n 's/.*Started UserServiceApp in \([0-9.]*\) seconds.*/\1/p' "$LOG"
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null || true
+}
+
+run_mode() {
+    NAME=$1
+    shift
+    echo "== $NAME =="
+    i=0
+    while [ $i -lt "$RUNS" ]; do
+        start_once "$@"
+        i=$((i + 1))
+    done
+}
+
+run_mode "ddl-auto=create, in-memory" \
+    --spring.datasource.url=jdbc:h2:mem:testdb --spring.jpa.hibernate.ddl-auto=create --spring.flyway.enabled=false
+
+# The first start applies the migrations, the measured ones are restarts against the existing database
+start_once --spring.datasource.url=jdbc:h2:file:"$DB_DIR"/userdb > /dev/null
+run_mode "flyway, file-backed (restart)" --spring.datasource.url=jdbc:h2:file:"$DB_DIR"/userdb
+
+rm -rf "$DB_DIR"
@@ -0,0 +1,40 @@
+package com.chatbiti.userservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-stage timers of the authentication pipeline, published as user.auth.<stage> tagged by outcome
+@Component
+public class AuthMetrics {
+    public static final String FILTER = "filter";
+    public static final String JWT_VERIFY = "jwt.verify";
+    public static final String USER_LOOKUP = "user.lookup";
+    public static final String TOKEN_CHECK = "token.check";
+    // The whole authentication of a login: waiting for a hashing thread, the user lookup and the password check
+    public static final String AUTHENTICATE = "login.authenticate";
+    public static final String TOKEN_PERSIST = "token.persist";
+
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public AuthMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stop(Timer.Sample sample, String stage, String outcome) {
+        sample.stop(timers.computeIfAbsent(stage + ":" + outcome, key -> Timer.builder("user.auth." + stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.chatbiti.userservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Expired tokens are otherwise only removed when somebody presents them again,
+// so this keeps the token table proportional to the live sessions
+@Component
+public class ExpiredTokenReaper {
+    private TokenRepository tokenRepository;
+
+    private int batchSize;
+
+    private Counter reapedTokens;
+
+    private Timer reapTime;
+
+    public ExpiredTokenReaper(TokenRepository tokenRepository,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${application.security.token-reaper.batch-size}") int batchSize) {
+        this.tokenRepository = tokenRepository;
+        this.batchSize = batchSize;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.reapedTokens = Counter.builder("user.tokens.reaped")
+                .description("Expired token rows deleted by the reaper")
+                .register(registry);
+        this.reapTime = Timer.builder("user.tokens.reap.time")
+                .description("Time spent deleting expired token rows")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.security.token-reaper.interval}",
+               initialDelayString = "${application.security.token-reaper.interval}")
+    public void reapExpiredTokens() {
+        reapTime.record(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> expiredIds;
+            do {
+                // Each batch is deleted in its own short transaction so the table is never locked for long
+                expiredIds = tokenRepository.findExpiredIds(now, PageRequest.of(0, batchSize));
+                if (!expiredIds.isEmpty()) {
+                    reapedTokens.increment(tokenRepository.deleteByIds(expiredIds));
+                }
+            } while (expiredIds.size() == batchSize);
+        });
+    }
+}
@@ -1,40 +1,65 @@
 package com.chatbiti.userservice;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collection;
 import java.util.Optional;
 
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
 @Service
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    // When enabled the principal is built from the token claims instead of being loaded from the database.
+    // Role changes then only take effect through a newly issued token (see UserServiceImpl.subscribe).
+    @Value("${application.security.stateless-validation}")
+    private boolean statelessValidation;
+
     private JwtService jwtService;
 
-    private UserDetailsService userDetailsService;
+    private UserDetailsCache userDetailsCache;
+
+    private AuthMetrics authMetrics;
+
+    private StaticResponseBody unauthorisedResponse;
+
+    private StaticResponseBody invalidTokenResponse;
+
+    private StaticResponseBody expiredTokenResponse;
 
-    private ObjectMapper mapper;
+    private StaticResponseBody revokedTokenResponse;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService, ObjectMapper mapper) {
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   UserDetailsCache userDetailsCache,
+                                   ObjectMapper mapper,
+                                   AuthMetrics authMetrics) {
         this.jwtService = jwtService;
-        this.userDetailsService = userDetailsService;
-        this.mapper = mapper;
+        this.userDetailsCache = userDetailsCache;
+        this.authMetrics = authMetrics;
+        this.unauthorisedResponse = new StaticResponseBody(mapper, "failure", Optional.of("Unauthorised!"));
+        this.invalidTokenResponse = new StaticResponseBody(mapper, "failure", Optional.of("Invalid token!"));
+        this.expiredTokenResponse = new StaticResponseBody(mapper, "failure", Optional.of("Token expired!"));
+        // What clients have always been told for a logged-out token on this path, kept for compatibility
+        this.revokedTokenResponse = new StaticResponseBody(mapper, "failure", Optional.of("Invalid user!"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@Nonnull HttpServletRequest request) {
+        return PublicPaths.matches(request.getServletPath());
     }
 
 
@@ -43,90 +68,96 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     @Nonnull HttpServletResponse response,
                                     @Nonnull FilterChain filterChain
     ) throws ServletException, IOException {
-        if (request.getServletPath().contains("/v1/user/login") ||
-            request.getServletPath().contains("/v1/user/register") ||
-            request.getServletPath().contains("/h2-console")) { // TODO: Remove this later
-            filterChain.doFilter(request, response);
-            return;
-        }
-
+        Timer.Sample sample = authMetrics.start();
 
         String authHeader = request.getHeader(AUTHORIZATION);
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            fillResponseBody(response, "failure", "Unauthorised!");
+            reject(response, sample, "unauthorised", unauthorisedResponse);
             return;
         }
 
         String token = authHeader.substring(7);
 
-        String email;
+        VerifiedToken verifiedToken;
         try {
-            email = jwtService.extractEmail(token);
+            verifiedToken = jwtService.verify(token);
         }
         catch (Exception e) {
-            fillResponseBody(response, "failure", "Invalid token!");
+            reject(response, sample, "invalid_token", invalidTokenResponse);
+            return;
+        }
+
+        if (verifiedToken.isExpired()) {
+            // Access tokens were never stored, nothing to clean up
+            if (verifiedToken.getSessionId() == null) {
+                jwtService.deleteToken(token);
+            }
+            reject(response, sample, "expired", expiredTokenResponse);
+            return;
+        }
+
+        String email = verifiedToken.getEmail();
+        if (email != null && statelessValidation && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (!jwtService.isValid(verifiedToken)) {
+                reject(response, sample, "revoked", invalidTokenResponse);
+                return;
+            }
+
+            TokenPrincipal principal = new TokenPrincipal(email, verifiedToken.getAuthorities());
+            setAuthentication(request, principal, principal.authorities());
+            authMetrics.stop(sample, AuthMetrics.FILTER, "accepted");
+            filterChain.doFilter(request, response);
             return;
         }
 
         if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             UserDetails userDetails;
             try {
-                userDetails = userDetailsService.loadUserByUsername(email);
+                userDetails = userDetailsCache.getUserDetails(email);
             }
             catch (Exception e) {
-                fillResponseBody(response, "failure", "Invalid token!");
+                reject(response, sample, "unknown_user", invalidTokenResponse);
                 return;
             }
 
-            if (jwtService.isValid(token, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
-                authToken.setDetails(
-                        new WebAuthenticationDetailsSource().buildDetails(request)
-                );
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+            if (jwtService.isValid(verifiedToken, userDetails)) {
+                setAuthentication(request, userDetails, userDetails.getAuthorities());
+                authMetrics.stop(sample, AuthMetrics.FILTER, "accepted");
                 filterChain.doFilter(request, response);
                 return;
             }
 
-            if (jwtService.isTokenExpired(token)) {
-                jwtService.deleteToken(token);
-                fillResponseBody(response, "failure", "Token expired!");
-                return;
-            }
-            if (jwtService.isValidUser(token, userDetails)) {
-                fillResponseBody(response, "failure", "Invalid user!");
-                return;
-            }
-
-            // Token not present
-            fillResponseBody(response, "failure", "Invalid token!");
+            // The user details are loaded by the token's subject, so the token is always issued for them:
+            // failing validation means it is no longer stored
+            reject(response, sample, "revoked", revokedTokenResponse);
             return;
         }
 
         if (email == null) {
-            fillResponseBody(response, "failure", "Invalid token!");
+            reject(response, sample, "invalid_token", invalidTokenResponse);
             return;
         }
 
+        authMetrics.stop(sample, AuthMetrics.FILTER, "accepted");
         filterChain.doFilter(request, response);
     }
 
-    private void fillResponseBody(HttpServletResponse response, String status, String errorMessage) {
-        response.setStatus(HttpStatus.OK.value());
-        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    private void setAuthentication(HttpServletRequest request,
+                                   Object principal,
+                                   Collection<? extends GrantedAuthority> authorities) {
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                principal,
+                null,
+                authorities
+        );
+        authToken.setDetails(
+                new WebAuthenticationDetailsSource().buildDetails(request)
+        );
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 
-        Map<String, Object> responseMap = new LinkedHashMap<>();
-        responseMap.put("status", status);
-        responseMap.put("errorMessage", Optional.of(errorMessage));
-        try {
-            mapper.writeValue(response.getWriter(), responseMap);
-        } catch (IOException e) {
-            // In general shouldn't reach here
-            System.out.println("Couldn't get the response writer!");
-        }
+    private void reject(HttpServletResponse response, Timer.Sample sample, String outcome, StaticResponseBody body) {
+        authMetrics.stop(sample, AuthMetrics.FILTER, outcome);
+        body.writeTo(response);
     }
 }
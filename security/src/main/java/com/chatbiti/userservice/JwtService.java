@@ -1,87 +1,161 @@
 package com.chatbiti.userservice;
 
-import com.chatbiti.userservice.model.Token;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 public class JwtService {
-    @Value("${application.security.key}")
-    private String key;
-
     @Value("${application.security.token-duration}")
     private long tokenDuration;
 
-    private TokenRepository tokenRepository;
+    @Value("${application.security.access-token-duration}")
+    private long accessTokenDuration;
+
+    private TokenStore tokenStore;
+
+    private AuthMetrics authMetrics;
+
+    private SigningKeyRing signingKeyRing;
+
+    // Built once, the signing key ring hands it the verification key for each token's kid
+    private JwtParser parser;
+
+    public JwtService(TokenStore tokenStore, AuthMetrics authMetrics, SigningKeyRing signingKeyRing) {
+        this.tokenStore = tokenStore;
+        this.authMetrics = authMetrics;
+        this.signingKeyRing = signingKeyRing;
+    }
+
+    @PostConstruct
+    void init() {
+        parser = Jwts.parser().keyLocator(signingKeyRing).build();
+    }
 
-    public JwtService(TokenRepository tokenRepository) {
-        this.tokenRepository = tokenRepository;
+    // Throws a JwtException when the token is malformed or the signature doesn't match.
+    // Expired tokens are still returned (their signature was checked) so callers can tell them apart.
+    public VerifiedToken verify(String token) {
+        Timer.Sample sample = authMetrics.start();
+        try {
+            VerifiedToken verifiedToken = new VerifiedToken(token, parser.parseSignedClaims(token).getPayload(), false);
+            authMetrics.stop(sample, AuthMetrics.JWT_VERIFY, "valid");
+            return verifiedToken;
+        }
+        catch (ExpiredJwtException e) {
+            authMetrics.stop(sample, AuthMetrics.JWT_VERIFY, "expired");
+            return new VerifiedToken(token, e.getClaims(), true);
+        }
+        catch (SignatureException e) {
+            authMetrics.stop(sample, AuthMetrics.JWT_VERIFY, "invalid_signature");
+            throw e;
+        }
+        catch (JwtException | IllegalArgumentException e) {
+            authMetrics.stop(sample, AuthMetrics.JWT_VERIFY, "malformed");
+            throw e;
+        }
     }
 
     public String extractEmail(String token) {
-        return extractAllClaims(token).getSubject();
+        return verify(token).getEmail();
     }
 
     public Date extractExpiration(String token) {
-        return extractAllClaims(token).getExpiration();
+        return verify(token).getExpiration();
     }
 
-    public String generateToken(UserDetails userDetails, Map<String, Object> claims) {
+    // A token that is persisted and checked against the token store on every request
+    public VerifiedToken issueToken(UserDetails userDetails, Map<String, Object> claims) {
+        return issueToken(userDetails, claims, tokenDuration);
+    }
+
+    // A short-lived token that is never persisted. It belongs to the login session (refresh token family)
+    // named by its sid claim and is accepted on its signature, expiration and the in-memory session denylist.
+    public VerifiedToken issueAccessToken(UserDetails userDetails, String sessionId) {
+        return issueToken(userDetails, Map.of(VerifiedToken.SESSION_ID_CLAIM, sessionId), accessTokenDuration);
+    }
+
+    private VerifiedToken issueToken(UserDetails userDetails, Map<String, Object> claims, long duration) {
         List<String> authorities = userDetails
                 .getAuthorities()
                 .stream()
                 .map(GrantedAuthority::getAuthority)
                 .toList();
-        var currentTime = System.currentTimeMillis();
-        return Jwts
+        // JWT dates have second precision, truncate so the returned claims match the encoded ones
+        var currentTime = System.currentTimeMillis() / 1000 * 1000;
+        Date issuedAt = new Date(currentTime);
+        Date expiration = new Date(currentTime + duration / 1000 * 1000);
+        SigningKeyRing.ActiveKey signingKey = signingKeyRing.getActiveKey();
+        String token = Jwts
                 .builder()
+                .header().keyId(signingKey.kid()).and()
                 .claims(claims)
                 .subject(userDetails.getUsername())
-                .issuedAt(new Date(currentTime))
-                .expiration(new Date(currentTime + tokenDuration))
+                .issuedAt(issuedAt)
+                .expiration(expiration)
                 .claim("authorities", authorities)
-                .signWith(getSigningKey())
+                .signWith(signingKey.key())
                 .compact();
+        Claims tokenClaims = Jwts
+                .claims()
+                .add(claims)
+                .subject(userDetails.getUsername())
+                .issuedAt(issuedAt)
+                .expiration(expiration)
+                .add("authorities", authorities)
+                .build();
+        return new VerifiedToken(token, tokenClaims, false);
     }
 
-    public boolean isValid(String token, UserDetails userDetails) {
-        return isValidUser(token, userDetails)
-               && !isTokenExpired(token)
-               && tokenRepository.existsByToken(token);
+    public String generateToken(UserDetails userDetails, Map<String, Object> claims) {
+        return issueToken(userDetails, claims).token();
     }
 
-    public boolean isValidUser(String token, UserDetails userDetails) {
-        return extractEmail(token).equals(userDetails.getUsername());
-
+    public boolean isValid(VerifiedToken token, UserDetails userDetails) {
+        return token.isIssuedFor(userDetails) && isValid(token);
     }
 
-    public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date(System.currentTimeMillis()));
+    // Checks the token without looking at the user it was issued for
+    public boolean isValid(VerifiedToken token) {
+        if (token.isExpired()) {
+            return false;
+        }
+        if (token.getSessionId() != null) {
+            // Not stored, only a session ended by logout makes it invalid before it expires
+            return !tokenStore.isSessionRevoked(token.getSessionId());
+        }
+
+        Timer.Sample sample = authMetrics.start();
+        boolean active = tokenStore.isActive(token.token());
+        authMetrics.stop(sample, AuthMetrics.TOKEN_CHECK, active ? "active" : "revoked");
+        return active;
     }
 
-    public void deleteToken(String token) {
-        Optional<Token> storedToken = tokenRepository.findByToken(token);
-        storedToken.ifPresent(value -> tokenRepository.delete(value));
+    public boolean isValid(String token, UserDetails userDetails) {
+        return isValid(verify(token), userDetails);
     }
 
-
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(key));
+    public boolean isValidUser(String token, UserDetails userDetails) {
+        return verify(token).isIssuedFor(userDetails);
     }
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token).getPayload();
+
+    public boolean isTokenExpired(String token) {
+        return verify(token).isExpired();
     }
 
+    public void deleteToken(String token) {
+        tokenStore.delete(token);
+    }
 }
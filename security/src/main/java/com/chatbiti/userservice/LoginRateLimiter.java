@@ -0,0 +1,117 @@
+package com.chatbiti.userservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Throttles login attempts per client address and per account before any password hashing is done.
+// Each bucket is a single AtomicLong (see Limit), so acquiring never takes a lock.
+@Component
+public class LoginRateLimiter {
+    private boolean enabled;
+
+    private Limit perAddress;
+
+    private Limit perEmail;
+
+    private Counter rejectedByAddress;
+
+    private Counter rejectedByEmail;
+
+    public LoginRateLimiter(ObjectProvider<MeterRegistry> meterRegistry,
+                            @Value("${application.security.login-rate-limit.enabled}") boolean enabled,
+                            @Value("${application.security.login-rate-limit.maximum-size}") long maximumSize,
+                            @Value("${application.security.login-rate-limit.per-address.burst}") int addressBurst,
+                            @Value("${application.security.login-rate-limit.per-address.per-minute}") int addressPerMinute,
+                            @Value("${application.security.login-rate-limit.per-email.burst}") int emailBurst,
+                            @Value("${application.security.login-rate-limit.per-email.per-minute}") int emailPerMinute) {
+        this.enabled = enabled;
+        this.perAddress = new Limit(addressBurst, addressPerMinute, maximumSize);
+        this.perEmail = new Limit(emailBurst, emailPerMinute, maximumSize);
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.rejectedByAddress = Counter.builder("user.login.rate_limited")
+                .description("Login attempts rejected before the password was checked")
+                .tag("limit", "address")
+                .register(registry);
+        this.rejectedByEmail = Counter.builder("user.login.rate_limited")
+                .description("Login attempts rejected before the password was checked")
+                .tag("limit", "email")
+                .register(registry);
+    }
+
+    public boolean tryAcquire(String clientAddress, String email) {
+        if (!enabled) {
+            return true;
+        }
+        if (clientAddress != null && !perAddress.tryAcquire(clientAddress)) {
+            rejectedByAddress.increment();
+            return false;
+        }
+        // Case-insensitive so an attacker can't get a fresh bucket by changing the case of the address
+        if (email != null && !perEmail.tryAcquire(email.toLowerCase(Locale.ROOT))) {
+            rejectedByEmail.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // A token bucket in its GCRA form: instead of a token count and a refill time, every key only stores the
+    // (theoretical) time at which its bucket is full again. An attempt moves that time one interval forward,
+    // and is refused if it would end up more than a full burst ahead of now.
+    static final class Limit {
+        private final LongSupplier nanoClock;
+
+        // System.nanoTime() may be negative, times are kept relative to this so a new bucket can start at 0
+        private final long origin;
+
+        private final long interval;
+
+        private final long burstWindow;
+
+        private final Cache<String, AtomicLong> buckets;
+
+        Limit(int burst, int perMinute, long maximumSize) {
+            this(burst, perMinute, maximumSize, System::nanoTime);
+        }
+
+        Limit(int burst, int perMinute, long maximumSize, LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            this.origin = nanoClock.getAsLong();
+            this.interval = TimeUnit.MINUTES.toNanos(1) / perMinute;
+            this.burstWindow = interval * burst;
+            // A bucket left alone for a full burst window is full again, the same as a new one, so it can go
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterAccess(Duration.ofNanos(burstWindow))
+                    .ticker(nanoClock::getAsLong)
+                    .build();
+        }
+
+        boolean tryAcquire(String key) {
+            AtomicLong bucket = buckets.get(key, k -> new AtomicLong());
+            long now = nanoClock.getAsLong() - origin;
+            while (true) {
+                long fullAt = bucket.get();
+                long nextFullAt = Math.max(fullAt, now) + interval;
+                if (nextFullAt - now > burstWindow) {
+                    return false;
+                }
+                if (bucket.compareAndSet(fullAt, nextFullAt)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatbiti.userservice;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+// Picks application.security.password-encoding.bcrypt-strength for the machine it runs on: the highest cost whose
+// median hash time stays within the target. Run it on the production hardware with
+// ./gradlew :security:calibratePasswordHashing -PtargetMillis=250
+public class PasswordHashingCalibration {
+    private static final int MIN_STRENGTH = 4;
+
+    private static final int MAX_STRENGTH = 31;
+
+    private static final int SAMPLES = 5;
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+
+        int chosenStrength = MIN_STRENGTH;
+        // Every step doubles the work, so the first strength over the target is also the last one measured
+        for (int strength = MIN_STRENGTH; strength <= MAX_STRENGTH; strength++) {
+            long millis = medianHashMillis(strength);
+            System.out.println("strength " + strength + ": " + millis + " ms");
+            if (millis > targetMillis) {
+                break;
+            }
+            chosenStrength = strength;
+        }
+
+        System.out.println();
+        System.out.println("Target " + targetMillis + " ms per hash:");
+        System.out.println("application.security.password-encoding.bcrypt-strength=" + chosenStrength);
+    }
+
+    private static long medianHashMillis(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        // The first hash includes class loading and JIT warm-up
+        encoder.encode("calibration");
+
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode("calibration");
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
@@ -0,0 +1,93 @@
+package com.chatbiti.userservice;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Runs BCrypt work (login verification, registration hashing) on a small dedicated pool.
+// This caps the CPU a login burst can take and the number of request threads that can be
+// parked behind it, leaving the rest free for cheap token validation.
+@Component
+public class PasswordHashingExecutor {
+    private ThreadPoolExecutor executor;
+
+    private Timer hashTime;
+
+    public PasswordHashingExecutor(ObjectProvider<MeterRegistry> meterRegistry,
+                                   @Value("${application.security.password-hashing.threads}") int threads,
+                                   @Value("${application.security.password-hashing.queue-capacity}") int queueCapacity) {
+        // 0 means half of the available cores
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("user.password.hashing.queue", executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(registry);
+        Gauge.builder("user.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks currently running")
+                .register(registry);
+        this.hashTime = Timer.builder("user.password.hashing.time")
+                .description("Time spent hashing or verifying a password")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Blocks until the task is done. Throws RejectedExecutionException right away when the queue is full.
+    public <T> T execute(Callable<T> task) {
+        Future<T> result = executor.submit(() -> hashTime.recordCallable(task));
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Fire and forget for work nobody waits on (e.g. rehashing an outdated password).
+    // Returns false instead of queueing when the pool is saturated, interactive logins come first.
+    public boolean trySubmit(Runnable task) {
+        try {
+            executor.execute(() -> hashTime.record(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package com.chatbiti.userservice;
+
+import java.util.Set;
+
+// Paths reachable without a token. The patterns feed SecurityConfig and matches() is the
+// precomputed equivalent used by JwtAuthenticationFilter on every request.
+final class PublicPaths {
+    static final String[] PATTERNS = {
+            "/v1/user/register",
+            "/v1/user/login",
+            "/v1/user/refresh",
+            "/.well-known/jwks.json",
+            "/h2-console/**", // TODO: Remove this later when migrating to H2 server DB
+            // Only the probes, metrics expose user counts and timings (see SecurityConfig)
+            "/actuator/health",
+            "/actuator/health/**"
+    };
+
+    private static final Set<String> EXACT_PATHS = Set.of("/v1/user/register", "/v1/user/login", "/v1/user/refresh",
+            "/.well-known/jwks.json");
+
+    private static final String[] PATH_PREFIXES = {"/h2-console", "/actuator/health"};
+
+    private PublicPaths() {
+    }
+
+    static boolean matches(String servletPath) {
+        if (EXACT_PATHS.contains(servletPath)) {
+            return true;
+        }
+        for (String prefix : PATH_PREFIXES) {
+            if (servletPath.startsWith(prefix)
+                && (servletPath.length() == prefix.length() || servletPath.charAt(prefix.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
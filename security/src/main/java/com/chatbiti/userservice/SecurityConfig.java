@@ -42,11 +42,8 @@ public class SecurityConfig {
                         .frameOptions(HeadersConfigurer.FrameOptionsConfig::sameOrigin)
                 )
                 .authorizeHttpRequests(req ->
-                        req.requestMatchers(
-                                "/v1/user/register",
-                                "/v1/user/login",
-                                "/h2-console/**" // TODO: Remove this later when migrating to H2 server DB
-                        ).permitAll()
+                        req.requestMatchers(PublicPaths.PATTERNS).permitAll()
+                                .requestMatchers("/actuator/**").hasAuthority("ADMIN")
                                 .anyRequest()
                                 .authenticated()
                 )
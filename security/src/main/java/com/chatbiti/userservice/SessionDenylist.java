@@ -0,0 +1,76 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.RevokedSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessions ended by logout or logout-all. Their access tokens are never stored, so without this they would stay
+// usable until they expire. An entry is only needed for one access-token-duration, so the whole list fits in memory
+// and checking it costs no database round-trip. Sessions ended on another instance are picked up on the next poll.
+// Only sessions with refresh tokens have access tokens, so the poll is skipped while refresh tokens are disabled.
+@Component
+public class SessionDenylist {
+    private RevokedSessionRepository revokedSessionRepository;
+
+    private boolean enabled;
+
+    private Duration accessTokenDuration;
+
+    // Session id -> epoch millis after which its access tokens have expired anyway
+    private final Map<String, Long> revokedSessions = new ConcurrentHashMap<>();
+
+    public SessionDenylist(RevokedSessionRepository revokedSessionRepository,
+                           @Value("${application.security.refresh-tokens.enabled}") boolean enabled,
+                           @Value("${application.security.access-token-duration}") long accessTokenDuration) {
+        this.revokedSessionRepository = revokedSessionRepository;
+        this.enabled = enabled;
+        this.accessTokenDuration = Duration.ofMillis(accessTokenDuration);
+    }
+
+    public void revoke(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(accessTokenDuration);
+        for (String sessionId : sessionIds) {
+            revokedSessions.put(sessionId, toEpochMillis(expiresAt));
+        }
+        revokedSessionRepository.saveAll(sessionIds.stream()
+                .map(sessionId -> new RevokedSession(sessionId, expiresAt))
+                .toList());
+    }
+
+    public boolean isRevoked(String sessionId) {
+        return revokedSessions.containsKey(sessionId);
+    }
+
+    // Also runs right at startup, so a new instance never accepts a token revoked before it started
+    @Scheduled(fixedDelayString = "${application.security.session-denylist.poll-interval}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (RevokedSession revokedSession : revokedSessionRepository.findAllByExpiresAtAfter(now)) {
+            revokedSessions.put(revokedSession.getSessionId(), toEpochMillis(revokedSession.getExpiresAt()));
+        }
+
+        long nowMillis = toEpochMillis(now);
+        revokedSessions.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+        revokedSessionRepository.deleteExpired(now);
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,87 @@
+package com.chatbiti.userservice;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+// Encrypts the private key material stored in signing_key with AES-GCM under the configured key-encryption key,
+// so a copy of the database file (or a look through the H2 console) doesn't hand out the signing keys.
+// The kid is authenticated along with it, a row's key can't be swapped into another row.
+// Without a key-encryption key, and for rows written before one was configured, the material is plain base64.
+final class SigningKeyCipher {
+    private static final String PREFIX = "aesgcm:";
+
+    private static final int IV_LENGTH = 12;
+
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKeySpec keyEncryptionKey;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    SigningKeyCipher(String keyEncryptionKey) {
+        if (keyEncryptionKey.isBlank()) {
+            this.keyEncryptionKey = null;
+            return;
+        }
+
+        byte[] key = Decoders.BASE64.decode(keyEncryptionKey);
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalStateException("The signing key-encryption key must be 16, 24 or 32 bytes (base64)");
+        }
+        this.keyEncryptionKey = new SecretKeySpec(key, "AES");
+    }
+
+    boolean isEnabled() {
+        return keyEncryptionKey != null;
+    }
+
+    String encrypt(String kid, String keyMaterial) {
+        if (!isEnabled()) {
+            return keyMaterial;
+        }
+
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, kid, iv);
+            byte[] ciphertext = cipher.doFinal(keyMaterial.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + Encoders.BASE64.encode(ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Couldn't encrypt signing key " + kid, e);
+        }
+    }
+
+    String decrypt(String kid, String storedKeyMaterial) {
+        if (!storedKeyMaterial.startsWith(PREFIX)) {
+            return storedKeyMaterial;
+        }
+        if (!isEnabled()) {
+            throw new IllegalStateException("Signing key " + kid + " is encrypted but no key-encryption key is configured");
+        }
+
+        try {
+            byte[] stored = Decoders.BASE64.decode(storedKeyMaterial.substring(PREFIX.length()));
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, kid, Arrays.copyOf(stored, IV_LENGTH));
+            byte[] keyMaterial = cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH);
+            return new String(keyMaterial, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Couldn't decrypt signing key " + kid + ", wrong key-encryption key?", e);
+        }
+    }
+
+    private Cipher cipher(int mode, String kid, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, keyEncryptionKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
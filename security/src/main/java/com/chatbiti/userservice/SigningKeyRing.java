@@ -0,0 +1,295 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.SigningKey;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.PublicJwk;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// The keys tokens are signed and verified with, shared by all instances through the signing_key table.
+// The newest activated key signs, the older ones only verify until every token they signed has expired,
+// so a rotation never invalidates a session. A new key is published a while before it's used for signing
+// so every instance (and every JWKS consumer) knows it by the time the first token carrying its kid shows up.
+// Used by the JWT parser as its key locator, keys are decoded once per ring refresh, never per token.
+@Component
+public class SigningKeyRing extends LocatorAdapter<Key> {
+    private SigningKeyRepository signingKeyRepository;
+
+    private String key;
+
+    private String algorithm;
+
+    private String privateKey;
+
+    private String publicKey;
+
+    private String keyId;
+
+    private Duration tokenDuration;
+
+    // Zero disables the scheduled rotation
+    private Duration rotationInterval;
+
+    private Duration activationDelay;
+
+    private SigningKeyCipher signingKeyCipher;
+
+    // Tokens issued before the ring existed have no kid header, they were signed with the configured HS256 key
+    private String legacyKid;
+
+    private volatile Ring ring;
+
+    // Activation time of the last key this instance rotated in. Its save may not be visible to the next read yet.
+    private volatile LocalDateTime ownSuccessorActivatesAt = LocalDateTime.MIN;
+
+    public SigningKeyRing(SigningKeyRepository signingKeyRepository,
+                          @Value("${application.security.key}") String key,
+                          @Value("${application.security.signing.algorithm}") String algorithm,
+                          @Value("${application.security.signing.private-key}") String privateKey,
+                          @Value("${application.security.signing.public-key}") String publicKey,
+                          @Value("${application.security.signing.key-id}") String keyId,
+                          @Value("${application.security.signing.key-encryption-key}") String keyEncryptionKey,
+                          @Value("${application.security.token-duration}") long tokenDuration,
+                          @Value("${application.security.signing.rotation-interval}") Duration rotationInterval,
+                          @Value("${application.security.signing.activation-delay}") Duration activationDelay,
+                          @Value("${application.security.signing.refresh-interval}") long refreshInterval,
+                          @Value("${application.security.signing.jwks-max-age}") Duration jwksMaxAge) {
+        // Another instance may only load a new key one refresh-interval after it was created, and a JWKS consumer
+        // may keep a set fetched from it just before for another jwks-max-age. The key must not sign before then.
+        Duration minimumActivationDelay = jwksMaxAge.plusMillis(refreshInterval);
+        if (activationDelay.compareTo(minimumActivationDelay) < 0) {
+            throw new IllegalStateException("application.security.signing.activation-delay must be at least "
+                    + "jwks-max-age + refresh-interval (" + minimumActivationDelay + ")");
+        }
+
+        this.signingKeyRepository = signingKeyRepository;
+        this.key = key;
+        this.algorithm = algorithm;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.keyId = keyId;
+        this.tokenDuration = Duration.ofMillis(tokenDuration);
+        this.rotationInterval = rotationInterval;
+        this.activationDelay = activationDelay;
+        this.signingKeyCipher = new SigningKeyCipher(keyEncryptionKey);
+        this.legacyKid = keyId.isBlank() ? "default" : keyId;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!signingKeyCipher.isEnabled()) {
+            System.out.println("Error: application.security.signing.key-encryption-key is not set, signing keys are stored unencrypted");
+        }
+        List<SigningKey> keys = signingKeyRepository.findAllByOrderByActivatesAtAsc();
+        if (keys.isEmpty()) {
+            keys = List.of(seed());
+        }
+        ring = buildRing(keys, Map.of());
+    }
+
+    // Picks up keys created by other instances, rotates when due and drops retired keys
+    @Scheduled(fixedDelayString = "${application.security.signing.refresh-interval}",
+               initialDelayString = "${application.security.signing.refresh-interval}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        List<SigningKey> keys = new ArrayList<>(signingKeyRepository.findAllByOrderByActivatesAtAsc());
+        if (keys.isEmpty()) {
+            keys.add(seed());
+        }
+
+        SigningKey newest = keys.get(keys.size() - 1);
+        boolean rotationDue = !rotationInterval.isZero() && !newest.getCreatedAt().plus(rotationInterval).isAfter(now);
+        // Also rotates into a newly configured algorithm, tokens signed with the old one stay valid meanwhile.
+        // Never while a successor is pending, whether read from the repository or rotated in here and not readable
+        // yet: otherwise every refresh until it shows up would add one more key.
+        boolean pending = newest.getActivatesAt().isAfter(now) || ownSuccessorActivatesAt.isAfter(now);
+        if (!pending && (rotationDue || !newest.getAlgorithm().equals(algorithm))) {
+            // Instances rotating at the same moment just add one extra key each, the newest one wins
+            SigningKey rotated = generate(UUID.randomUUID().toString(), now, now.plus(activationDelay));
+            signingKeyRepository.save(rotated);
+            ownSuccessorActivatesAt = rotated.getActivatesAt();
+            keys.add(rotated);
+        }
+
+        List<String> retired = retiredKids(keys, now);
+        if (!retired.isEmpty()) {
+            signingKeyRepository.deleteByKidIn(retired);
+            keys.removeIf(signingKey -> retired.contains(signingKey.getKid()));
+        }
+
+        ring = buildRing(keys, ring.keys());
+    }
+
+    public ActiveKey getActiveKey() {
+        return ring.active();
+    }
+
+    // All keys that may still be seen in a token, as a JWK Set (RFC 7517). HS256 secrets are never published.
+    public Map<String, Object> getJsonWebKeySet() {
+        return ring.jsonWebKeySet();
+    }
+
+    // Returning null makes the parser reject the token as unverifiable
+    @Override
+    protected Key locate(JwsHeader header) {
+        String kid = header.getKeyId();
+        DecodedKey decodedKey = ring.keys().get(kid != null ? kid : legacyKid);
+        return decodedKey != null ? decodedKey.verificationKey() : null;
+    }
+
+    // The configured key becomes the first key of the ring so tokens issued before it keep verifying
+    private SigningKey seed() {
+        LocalDateTime now = LocalDateTime.now();
+        SigningKey seed;
+        if (algorithm.equals("HS256")) {
+            seed = new SigningKey(legacyKid, algorithm, signingKeyCipher.encrypt(legacyKid, key), null, now, now);
+        }
+        else if (privateKey.isBlank()) {
+            seed = generate(UUID.randomUUID().toString(), now, now);
+        }
+        else {
+            // Same kid as before the ring existed, the thumbprint unless configured
+            String kid = keyId.isBlank()
+                    ? Jwks.builder().key(decodePublicKey(algorithm, publicKey)).idFromThumbprint().build().getId()
+                    : keyId;
+            seed = new SigningKey(kid, algorithm, signingKeyCipher.encrypt(kid, privateKey), publicKey, now, now);
+        }
+
+        try {
+            signingKeyRepository.save(seed);
+            return seed;
+        } catch (DataIntegrityViolationException e) {
+            // Another instance seeded the ring at the same time
+            return signingKeyRepository.findAllByOrderByActivatesAtAsc().get(0);
+        }
+    }
+
+    private SigningKey generate(String kid, LocalDateTime createdAt, LocalDateTime activatesAt) {
+        return switch (algorithm) {
+            case "HS256" -> new SigningKey(kid, algorithm,
+                    signingKeyCipher.encrypt(kid, Encoders.BASE64.encode(Jwts.SIG.HS256.key().build().getEncoded())),
+                    null, createdAt, activatesAt);
+            case "ES256" -> fromKeyPair(kid, Jwts.SIG.ES256.keyPair().build(), createdAt, activatesAt);
+            case "EdDSA" -> fromKeyPair(kid, Jwks.CRV.Ed25519.keyPair().build(), createdAt, activatesAt);
+            default -> throw new IllegalStateException("Unsupported signing algorithm: " + algorithm);
+        };
+    }
+
+    private SigningKey fromKeyPair(String kid, KeyPair keyPair, LocalDateTime createdAt, LocalDateTime activatesAt) {
+        return new SigningKey(kid, algorithm,
+                signingKeyCipher.encrypt(kid, Encoders.BASE64.encode(keyPair.getPrivate().getEncoded())),
+                Encoders.BASE64.encode(keyPair.getPublic().getEncoded()),
+                createdAt, activatesAt);
+    }
+
+    // A key is retired once its successor has been signing for longer than a token lives
+    private List<String> retiredKids(List<SigningKey> keys, LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(tokenDuration);
+        List<SigningKey> byActivation = new ArrayList<>(keys);
+        byActivation.sort(Comparator.comparing(SigningKey::getActivatesAt));
+
+        List<String> retired = new ArrayList<>();
+        for (int i = 0; i < byActivation.size() - 1; i++) {
+            if (!byActivation.get(i + 1).getActivatesAt().isAfter(cutoff)) {
+                retired.add(byActivation.get(i).getKid());
+            }
+        }
+        return retired;
+    }
+
+    private Ring buildRing(List<SigningKey> keys, Map<String, DecodedKey> previous) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, DecodedKey> decodedKeys = new HashMap<>();
+        List<Map<String, Object>> publicJwks = new ArrayList<>();
+        SigningKey active = keys.get(0);
+        for (SigningKey signingKey : keys) {
+            DecodedKey decodedKey = previous.containsKey(signingKey.getKid())
+                    ? previous.get(signingKey.getKid())
+                    : decode(signingKey);
+            decodedKeys.put(signingKey.getKid(), decodedKey);
+            if (decodedKey.jwk() != null) {
+                publicJwks.add(decodedKey.jwk());
+            }
+            if (!signingKey.getActivatesAt().isAfter(now) && !signingKey.getActivatesAt().isBefore(active.getActivatesAt())) {
+                active = signingKey;
+            }
+        }
+
+        DecodedKey activeKey = decodedKeys.get(active.getKid());
+        return new Ring(
+                new ActiveKey(active.getKid(), activeKey.signingKey()),
+                Map.copyOf(decodedKeys),
+                Map.of("keys", List.copyOf(publicJwks))
+        );
+    }
+
+    private DecodedKey decode(SigningKey signingKey) {
+        String privateKeyMaterial = signingKeyCipher.decrypt(signingKey.getKid(), signingKey.getPrivateKey());
+        if (signingKey.getAlgorithm().equals("HS256")) {
+            Key secretKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(privateKeyMaterial));
+            return new DecodedKey(secretKey, secretKey, null);
+        }
+
+        try {
+            KeyFactory keyFactory = keyFactory(signingKey.getAlgorithm());
+            Key signing = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Decoders.BASE64.decode(privateKeyMaterial)));
+            PublicKey verification = decodePublicKey(signingKey.getAlgorithm(), signingKey.getPublicKey());
+            PublicJwk<?> jwk = Jwks.builder()
+                    .key(verification)
+                    .id(signingKey.getKid())
+                    .algorithm(signingKey.getAlgorithm())
+                    .publicKeyUse("sig")
+                    .build();
+            return new DecodedKey(signing, verification, new LinkedHashMap<String, Object>(jwk));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + signingKey.getAlgorithm() + " signing key " + signingKey.getKid(), e);
+        }
+    }
+
+    private static PublicKey decodePublicKey(String algorithm, String publicKey) {
+        try {
+            return keyFactory(algorithm).generatePublic(new X509EncodedKeySpec(Decoders.BASE64.decode(publicKey)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid " + algorithm + " public key", e);
+        }
+    }
+
+    private static KeyFactory keyFactory(String algorithm) throws GeneralSecurityException {
+        return KeyFactory.getInstance(algorithm.equals("ES256") ? "EC" : "Ed25519");
+    }
+
+    public record ActiveKey(String kid, Key key) {
+    }
+
+    private record DecodedKey(Key signingKey, Key verificationKey, Map<String, Object> jwk) {
+    }
+
+    private record Ring(ActiveKey active, Map<String, DecodedKey> keys, Map<String, Object> jsonWebKeySet) {
+    }
+}
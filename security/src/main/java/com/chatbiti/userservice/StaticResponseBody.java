@@ -0,0 +1,41 @@
+package com.chatbiti.userservice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// A fixed {status, errorMessage} response serialized once up front and written as raw bytes,
+// so rejecting a request doesn't allocate a map or run the ObjectMapper
+public final class StaticResponseBody {
+    private final byte[] body;
+
+    public StaticResponseBody(ObjectMapper mapper, String status, Optional<String> errorMessage) {
+        Map<String, Object> responseMap = new LinkedHashMap<>();
+        responseMap.put("status", status);
+        responseMap.put("errorMessage", errorMessage);
+        try {
+            this.body = mapper.writeValueAsBytes(responseMap);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeTo(HttpServletResponse response) {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException e) {
+            // In general shouldn't reach here
+            System.out.println("Couldn't get the response output stream!");
+        }
+    }
+}
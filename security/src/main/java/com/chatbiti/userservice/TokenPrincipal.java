@@ -0,0 +1,14 @@
+package com.chatbiti.userservice;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.util.List;
+
+// Principal built only from verified token claims, used when the user isn't loaded from the database
+public record TokenPrincipal(String email, List<GrantedAuthority> authorities) implements Principal {
+    @Override
+    public String getName() {
+        return email;
+    }
+}
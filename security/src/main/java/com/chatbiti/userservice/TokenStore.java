@@ -0,0 +1,390 @@
+package com.chatbiti.userservice;
+
+import com.chatbiti.userservice.model.Token;
+import com.chatbiti.userservice.model.TokenDigest;
+import com.chatbiti.userservice.model.TokenExpiration;
+import com.chatbiti.userservice.model.TokenSession;
+import com.chatbiti.userservice.model.TokenType;
+import com.chatbiti.userservice.model.User;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Persists issued tokens and keeps an in-memory index of the active ones,
+// so validating a known-good token doesn't need a database round-trip.
+// An index hit is only trusted for recheck-interval, then the database is asked again: that bounds how long
+// a token revoked through another instance stays usable on this one.
+// In write-behind mode inserts and deletes are only queued here and committed in batches by flush(),
+// the index (plus the pending deletes) is what validation trusts until then.
+// Refresh tokens are stored here too but never indexed, they are only looked up on the rare refresh call.
+@Service
+public class TokenStore {
+    private TokenRepository tokenRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private SessionDenylist sessionDenylist;
+
+    private boolean writeBehind;
+
+    // 0 means unlimited
+    private int maxSessionsPerUser;
+
+    private Duration refreshTokenDuration;
+
+    private long recheckInterval;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Token digest -> until when the token is known to be active (its expiration at most), and whose it is
+    private final Map<String, IndexedToken> activeTokens = new ConcurrentHashMap<>();
+
+    private final Queue<Token> pendingInserts = new ConcurrentLinkedQueue<>();
+
+    // Digests revoked in memory but not yet deleted from the database
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+
+    public TokenStore(TokenRepository tokenRepository,
+                      TransactionTemplate transactionTemplate,
+                      SessionDenylist sessionDenylist,
+                      @Value("${application.security.token-store.write-behind.enabled}") boolean writeBehind,
+                      @Value("${application.security.max-sessions-per-user}") int maxSessionsPerUser,
+                      @Value("${application.security.refresh-token-duration}") long refreshTokenDuration,
+                      @Value("${application.security.active-token-index.recheck-interval}") long recheckInterval) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.sessionDenylist = sessionDenylist;
+        this.writeBehind = writeBehind;
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.refreshTokenDuration = Duration.ofMillis(refreshTokenDuration);
+        this.recheckInterval = recheckInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        for (Token token : tokenRepository.findAllByTokenTypeAndExpirationDateAfter(TokenType.BEARER, LocalDateTime.now())) {
+            activeTokens.put(token.getTokenDigest(), indexEntry(token.getExpirationDate(), token.getUser().getEmail()));
+        }
+    }
+
+    public void save(Token token) {
+        if (writeBehind) {
+            // Queued before it's indexed, so a delete of this token can never be queued ahead of its insert
+            pendingInserts.add(token);
+        }
+        else {
+            tokenRepository.save(token);
+        }
+        activeTokens.put(token.getTokenDigest(), indexEntry(token.getExpirationDate(), token.getUser().getEmail()));
+    }
+
+    public boolean delete(String token) {
+        String digest = TokenDigest.of(token);
+        if (writeBehind) {
+            if (pendingDeletes.contains(digest)) {
+                return false;
+            }
+            // Still queued for insert even if its index entry was evicted already: deleting the row now would find
+            // nothing and the next flush would bring the token back
+            if (activeTokens.containsKey(digest) || isPendingInsert(digest)) {
+                boolean queued = pendingDeletes.add(digest);
+                activeTokens.remove(digest);
+                return queued;
+            }
+            // Not known to this instance, it has to be checked against the database anyway
+        }
+
+        boolean deleted = tokenRepository.deleteByTokenDigest(digest) > 0;
+        // Drop from the index only after the row is gone, otherwise a concurrent miss could re-add it
+        activeTokens.remove(digest);
+        return deleted;
+    }
+
+    // Creates an opaque refresh token in the given family. Always written right away, even in write-behind mode,
+    // the client may exchange it any moment.
+    public String issueRefreshToken(User user, String family) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tokenRepository.save(new Token(refreshToken, LocalDateTime.now().plus(refreshTokenDuration), TokenType.REFRESH, user, family));
+        return refreshToken;
+    }
+
+    // Marks the refresh token as used and returns it, at most once per token.
+    // A token presented again after that was stolen or replayed: its whole family is revoked.
+    public Optional<Token> claimRefreshToken(String refreshToken) {
+        String digest = TokenDigest.of(refreshToken);
+        Optional<Token> storedToken = tokenRepository.findByTokenDigest(digest);
+        if (storedToken.isEmpty() || storedToken.get().getTokenType() != TokenType.REFRESH) {
+            return Optional.empty();
+        }
+
+        Token token = storedToken.get();
+        if (tokenRepository.markUsed(digest) == 0) {
+            System.out.println("Error: Refresh token reused, revoking its session");
+            revokeFamily(token.getFamily());
+            return Optional.empty();
+        }
+        if (token.getExpirationDate().isBefore(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+
+        // The used row stays until it expires (ExpiredTokenReaper), so a replay of any token of the family is detected
+        return Optional.of(token);
+    }
+
+    // Ends one login session, including the access tokens already issued for it. Returns whether it existed.
+    public boolean revokeFamily(String family) {
+        sessionDenylist.revoke(List.of(family));
+        return tokenRepository.deleteByFamily(family) > 0;
+    }
+
+    // Whether the session an access token belongs to hasn't been ended
+    public boolean isSessionActive(String family) {
+        return !sessionDenylist.isRevoked(family) && tokenRepository.existsByFamily(family);
+    }
+
+    // Checked for every access token, answered from memory
+    public boolean isSessionRevoked(String family) {
+        return sessionDenylist.isRevoked(family);
+    }
+
+    // Revokes every session of the user with one delete, returns how many there were.
+    // A login racing with this may keep its index entry, until its next recheck at most.
+    public int deleteAll(String email) {
+        sessionDenylist.revoke(tokenRepository.findFamiliesByUserEmail(email));
+
+        int revoked = 0;
+        if (writeBehind) {
+            // Deleted by the flush right after their insert
+            for (Token token : pendingInserts) {
+                if (token.getUser().getEmail().equals(email) && pendingDeletes.add(token.getTokenDigest())) {
+                    revoked++;
+                }
+            }
+        }
+        revoked += tokenRepository.deleteByUserEmail(email);
+        activeTokens.values().removeIf(indexedToken -> indexedToken.email().equals(email));
+        return revoked;
+    }
+
+    // Revokes the oldest sessions of the user beyond the configured cap
+    public void enforceSessionCap(User user) {
+        if (maxSessionsPerUser <= 0) {
+            return;
+        }
+
+        long sessions = tokenRepository.countSessionsByUser(user);
+        if (writeBehind) {
+            for (Token token : pendingInserts) {
+                if (token.getUser().getEmail().equals(user.getEmail())) {
+                    sessions++;
+                }
+            }
+        }
+        if (sessions <= maxSessionsPerUser) {
+            return;
+        }
+
+        // Pending inserts are the newest sessions, so the ones to revoke are all in the database
+        List<String> digests = new ArrayList<>();
+        int excess = (int) Math.min(sessions - maxSessionsPerUser, Integer.MAX_VALUE);
+        for (TokenSession session : tokenRepository.findOldestSessionsByUser(user, PageRequest.of(0, excess))) {
+            if (session.family() != null) {
+                revokeFamily(session.family());
+            }
+            else if (!pendingDeletes.contains(session.tokenDigest())) {
+                digests.add(session.tokenDigest());
+            }
+        }
+        revoke(digests);
+    }
+
+    // Deleting by the selected digests (rather than by user) keeps a token issued concurrently
+    // both in the database and in the index
+    private int revoke(List<String> digests) {
+        if (digests.isEmpty()) {
+            return 0;
+        }
+
+        int revoked;
+        if (writeBehind) {
+            pendingDeletes.addAll(digests);
+            revoked = digests.size();
+        }
+        else {
+            revoked = tokenRepository.deleteByTokenDigestIn(digests);
+        }
+        digests.forEach(activeTokens::remove);
+        return revoked;
+    }
+
+    public boolean isActive(String token) {
+        String digest = TokenDigest.of(token);
+        IndexedToken indexedToken = activeTokens.get(digest);
+        if (indexedToken != null && indexedToken.until() > System.currentTimeMillis()) {
+            return true;
+        }
+
+        // The row may still be there until the delete is flushed
+        if (pendingDeletes.contains(digest)) {
+            return false;
+        }
+
+        // Not indexed yet (e.g. issued by another instance after this one started),
+        // or indexed long enough ago that it may have been revoked elsewhere since
+        Optional<Token> storedToken = tokenRepository.findByTokenDigest(digest);
+        if (storedToken.isPresent() && storedToken.get().getExpirationDate().isAfter(LocalDateTime.now())) {
+            activeTokens.put(digest, indexEntry(storedToken.get().getExpirationDate(), storedToken.get().getUser().getEmail()));
+            return true;
+        }
+        if (writeBehind && isPendingInsert(digest)) {
+            return true;
+        }
+        if (indexedToken != null) {
+            activeTokens.remove(digest, indexedToken);
+        }
+        return false;
+    }
+
+    // isActive for many tokens at once: index hits are answered from memory, all the misses with one query.
+    // Returns the active ones.
+    public Set<String> findActive(Collection<String> tokens) {
+        long now = System.currentTimeMillis();
+        Set<String> active = new HashSet<>();
+        Map<String, String> misses = new HashMap<>();
+        for (String token : tokens) {
+            String digest = TokenDigest.of(token);
+            IndexedToken indexedToken = activeTokens.get(digest);
+            if (indexedToken != null && indexedToken.until() > now) {
+                active.add(token);
+            }
+            else if (!pendingDeletes.contains(digest)) {
+                misses.put(digest, token);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            LocalDateTime dateTime = LocalDateTime.now();
+            for (TokenExpiration stored : tokenRepository.findExpirationsByTokenDigestIn(misses.keySet())) {
+                if (stored.expirationDate().isAfter(dateTime)) {
+                    activeTokens.put(stored.tokenDigest(), indexEntry(stored.expirationDate(), stored.email()));
+                    active.add(misses.remove(stored.tokenDigest()));
+                }
+            }
+            // Saved here but not flushed yet, same as in isActive
+            if (writeBehind && !misses.isEmpty()) {
+                for (Token token : pendingInserts) {
+                    String pendingToken = misses.get(token.getTokenDigest());
+                    if (pendingToken != null) {
+                        active.add(pendingToken);
+                    }
+                }
+            }
+        }
+        return active;
+    }
+
+    // Only reached once the index entry of a token saved here is due for a recheck before its flush went through
+    private boolean isPendingInsert(String digest) {
+        for (Token token : pendingInserts) {
+            if (token.getTokenDigest().equals(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${application.security.token-store.write-behind.flush-interval}")
+    public synchronized void flush() {
+        if (pendingInserts.isEmpty() && pendingDeletes.isEmpty()) {
+            return;
+        }
+
+        // Deletes are taken before inserts: every queued delete then has its insert in this batch or an earlier one
+        List<String> deletes = new ArrayList<>(pendingDeletes);
+        List<Token> inserts = new ArrayList<>();
+        for (Token token = pendingInserts.poll(); token != null; token = pendingInserts.poll()) {
+            inserts.add(token);
+        }
+
+        try {
+            // Flushed as JDBC batches on commit (hibernate.jdbc.batch_size)
+            transactionTemplate.executeWithoutResult(status -> {
+                tokenRepository.saveAll(inserts);
+                if (!deletes.isEmpty()) {
+                    tokenRepository.deleteByTokenDigestIn(deletes);
+                }
+            });
+        }
+        // The rolled back transaction has assigned ids to the inserts, which would turn saving them again
+        // into merges of rows that don't exist. Copies without an id are inserted instead.
+        catch (DataIntegrityViolationException exception) {
+            // One bad row (e.g. a duplicate digest) must not hold back the rest, retry them one by one
+            for (Token token : inserts) {
+                try {
+                    tokenRepository.save(new Token(token));
+                }
+                catch (DataIntegrityViolationException rowException) {
+                    System.out.println("Error: Couldn't persist token: " + rowException.getMessage());
+                }
+            }
+            if (!deletes.isEmpty()) {
+                tokenRepository.deleteByTokenDigestIn(deletes);
+            }
+        }
+        catch (RuntimeException exception) {
+            // Database unavailable, keep everything queued for the next flush
+            for (Token token : inserts) {
+                pendingInserts.add(new Token(token));
+            }
+            throw exception;
+        }
+        pendingDeletes.removeAll(deletes);
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${application.security.active-token-index.eviction-interval}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        activeTokens.values().removeIf(indexedToken -> indexedToken.until() <= now);
+    }
+
+    private IndexedToken indexEntry(LocalDateTime expirationDate, String email) {
+        return new IndexedToken(Math.min(toEpochMillis(expirationDate), System.currentTimeMillis() + recheckInterval), email);
+    }
+
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record IndexedToken(long until, String email) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatbiti.userservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Keeps recently authenticated principals around so the auth filter doesn't
+// load the user and its roles from the database on every request
+@Component
+public class UserDetailsCache {
+    private UserDetailsService userDetailsService;
+
+    private Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(UserDetailsService userDetailsService,
+                            ObjectProvider<MeterRegistry> meterRegistry,
+                            @Value("${application.security.user-cache.maximum-size}") long maximumSize,
+                            @Value("${application.security.user-cache.time-to-live}") Duration timeToLive) {
+        this.userDetailsService = userDetailsService;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, "userDetails"));
+    }
+
+    // Throws UsernameNotFoundException like the underlying service, misses are not cached
+    public UserDetails getUserDetails(String email) {
+        return cache.get(email, userDetailsService::loadUserByUsername);
+    }
+
+    // Must be called whenever a user or its roles change
+    public void invalidate(String email) {
+        cache.invalidate(email);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,46 @@
+package com.chatbiti.userservice;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Date;
+import java.util.List;
+
+// A token whose signature has already been checked. Pass this around instead of the raw string
+// so the claims are parsed and verified only once per request.
+public record VerifiedToken(String token, Claims claims, boolean expired) {
+    public static final String SESSION_ID_CLAIM = "sid";
+
+    public String getEmail() {
+        return claims.getSubject();
+    }
+
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
+    // Set on short-lived access tokens only, null for tokens kept in the token store
+    public String getSessionId() {
+        return claims.get(SESSION_ID_CLAIM, String.class);
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        List<?> authorities = claims.get("authorities", List.class);
+        if (authorities == null) {
+            return List.of();
+        }
+        return authorities.stream()
+                .map(authority -> (GrantedAuthority) new SimpleGrantedAuthority(authority.toString()))
+                .toList();
+    }
+
+    public boolean isExpired() {
+        return expired || getExpiration().before(new Date(System.currentTimeMillis()));
+    }
+
+    public boolean isIssuedFor(UserDetails userDetails) {
+        return getEmail().equals(userDetails.getUsername());
+    }
+}
@@ -0,0 +1,99 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LoginRateLimiterTest {
+    private AtomicLong clock;
+
+    @BeforeEach
+    void setUp() {
+        // Negative like System.nanoTime() can be
+        clock = new AtomicLong(-TimeUnit.HOURS.toNanos(1));
+    }
+
+    @Test
+    void tryAcquire_allowsAFullBurstThenRejects() {
+        // Arrange
+        LoginRateLimiter.Limit limit = new LoginRateLimiter.Limit(5, 10, 100, clock::get);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire("key"), "attempt " + (i + 1));
+        }
+        boolean overBurst = limit.tryAcquire("key");
+
+        // Assert
+        assertFalse(overBurst);
+    }
+
+    @Test
+    void tryAcquire_rejectsUntilOneIntervalPassed() {
+        // Arrange
+        LoginRateLimiter.Limit limit = new LoginRateLimiter.Limit(1, 60, 100, clock::get);
+        assertTrue(limit.tryAcquire("key"));
+
+        // Act
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        boolean beforeRefill = limit.tryAcquire("key");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        boolean afterRefill = limit.tryAcquire("key");
+
+        // Assert
+        assertFalse(beforeRefill);
+        assertTrue(afterRefill);
+    }
+
+    @Test
+    void tryAcquire_refillsOneAttemptPerInterval() {
+        // Arrange
+        LoginRateLimiter.Limit limit = new LoginRateLimiter.Limit(3, 60, 100, clock::get);
+        for (int i = 0; i < 3; i++) {
+            limit.tryAcquire("key");
+        }
+
+        // Act
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        // Assert
+        assertTrue(limit.tryAcquire("key"));
+        assertTrue(limit.tryAcquire("key"));
+        assertFalse(limit.tryAcquire("key"));
+    }
+
+    @Test
+    void tryAcquire_idleBucketRefillsOnlyUpToTheBurst() {
+        // Arrange
+        LoginRateLimiter.Limit limit = new LoginRateLimiter.Limit(2, 60, 100, clock::get);
+        limit.tryAcquire("key");
+        limit.tryAcquire("key");
+
+        // Act
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        // Assert
+        assertTrue(limit.tryAcquire("key"));
+        assertTrue(limit.tryAcquire("key"));
+        assertFalse(limit.tryAcquire("key"));
+    }
+
+    @Test
+    void tryAcquire_keepsKeysApart() {
+        // Arrange
+        LoginRateLimiter.Limit limit = new LoginRateLimiter.Limit(1, 1, 100, clock::get);
+        assertTrue(limit.tryAcquire("10.0.0.1"));
+
+        // Act
+        boolean sameKey = limit.tryAcquire("10.0.0.1");
+        boolean otherKey = limit.tryAcquire("10.0.0.2");
+
+        // Assert
+        assertFalse(sameKey);
+        assertTrue(otherKey);
+    }
+}
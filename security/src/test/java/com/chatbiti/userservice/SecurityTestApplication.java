@@ -0,0 +1,11 @@
+package com.chatbiti.userservice;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+
+// The application class lives in the app module, this one lets the repository tests here find
+// the entities and repositories (H2, schema generated from the mappings)
+@SpringBootConfiguration
+@EnableAutoConfiguration
+class SecurityTestApplication {
+}
@@ -0,0 +1,160 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.chatbiti.userservice.model.SigningKey;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+
+class SigningKeyRingTest {
+    private static final String KEY = "IWp9WwnDHoq+2XViImpgEjieUdD4Ux/nHZigMPr36XM=";
+
+    private static final String KEY_ENCRYPTION_KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+    private static final long TOKEN_DURATION = 86400000;
+
+    private SigningKeyRepository signingKeyRepository;
+
+    @BeforeEach
+    void setUp() {
+        signingKeyRepository = mock(SigningKeyRepository.class);
+    }
+
+    @Test
+    void testConstructor_RejectsActivationBeforeCachedSetsExpire() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> new SigningKeyRing(signingKeyRepository,
+                KEY, "HS256", "", "", "", "", TOKEN_DURATION,
+                Duration.ofDays(30), Duration.ofMinutes(5), 60000, Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testRefresh_RotatesWhenDue() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        SigningKey current = hs256Key("current", now.minusDays(31));
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenReturn(new ArrayList<>(List.of(current)));
+        SigningKeyRing signingKeyRing = signingKeyRing("");
+        signingKeyRing.init();
+
+        // Act
+        signingKeyRing.refresh();
+
+        // Assert
+        ArgumentCaptor<SigningKey> rotated = ArgumentCaptor.forClass(SigningKey.class);
+        verify(signingKeyRepository).save(rotated.capture());
+        assertTrue(rotated.getValue().getActivatesAt().isAfter(now.plusMinutes(9)));
+        // Published right away, but the current key keeps signing until the new one activates
+        assertEquals("current", signingKeyRing.getActiveKey().kid());
+    }
+
+    @Test
+    void testRefresh_DoesNotRotateAgainWhileItsSuccessorIsNotReadableYet() {
+        // Arrange
+        SigningKey current = hs256Key("current", LocalDateTime.now().minusDays(31));
+        // The repository keeps returning the state from before the rotation
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenAnswer(invocation -> new ArrayList<>(List.of(current)));
+        SigningKeyRing signingKeyRing = signingKeyRing("");
+        signingKeyRing.init();
+
+        // Act
+        signingKeyRing.refresh();
+        signingKeyRing.refresh();
+        signingKeyRing.refresh();
+
+        // Assert
+        verify(signingKeyRepository, times(1)).save(any());
+    }
+
+    @Test
+    void testRefresh_RetiresKeyOnceSuccessorOutlivedItsTokens() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        SigningKey retired = hs256Key("retired", now.minusDays(20));
+        SigningKey kept = hs256Key("kept", now.minusDays(2));
+        SigningKey active = hs256Key("active", now.minusHours(1));
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenReturn(new ArrayList<>(List.of(retired, kept, active)));
+        SigningKeyRing signingKeyRing = signingKeyRing("");
+        signingKeyRing.init();
+
+        // Act
+        signingKeyRing.refresh();
+
+        // Assert
+        // "kept" signed until an hour ago, its tokens are still valid
+        verify(signingKeyRepository).deleteByKidIn(List.of("retired"));
+        verify(signingKeyRepository, never()).save(any());
+        assertEquals("active", signingKeyRing.getActiveKey().kid());
+    }
+
+    @Test
+    void testLocate_VerifiesTokensWithoutKidWithTheConfiguredKey() {
+        // Arrange
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenReturn(List.of());
+        SigningKeyRing signingKeyRing = signingKeyRing("");
+        signingKeyRing.init();
+        String legacyToken = Jwts.builder()
+                .subject("test@example.com")
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY)))
+                .compact();
+        String unknownKidToken = Jwts.builder()
+                .header().keyId("unknown").and()
+                .subject("test@example.com")
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY)))
+                .compact();
+
+        // Act
+        String subject = Jwts.parser().keyLocator(signingKeyRing).build().parseSignedClaims(legacyToken).getPayload().getSubject();
+
+        // Assert
+        assertEquals("test@example.com", subject);
+        assertEquals("default", signingKeyRing.getActiveKey().kid());
+        assertThrows(Exception.class, () -> Jwts.parser().keyLocator(signingKeyRing).build().parseSignedClaims(unknownKidToken));
+    }
+
+    @Test
+    void testInit_StoresSeedEncryptedAndReadsItBack() {
+        // Arrange
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenReturn(List.of());
+        SigningKeyRing seedingRing = signingKeyRing(KEY_ENCRYPTION_KEY);
+        seedingRing.init();
+        ArgumentCaptor<SigningKey> seed = ArgumentCaptor.forClass(SigningKey.class);
+        verify(signingKeyRepository).save(seed.capture());
+        when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenReturn(List.of(seed.getValue()));
+        String token = Jwts.builder()
+                .subject("test@example.com")
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY)))
+                .compact();
+
+        // Act
+        SigningKeyRing loadingRing = signingKeyRing(KEY_ENCRYPTION_KEY);
+        loadingRing.init();
+
+        // Assert
+        assertNotEquals(KEY, seed.getValue().getPrivateKey());
+        assertFalse(seed.getValue().getPrivateKey().contains(KEY));
+        assertEquals("test@example.com",
+                Jwts.parser().keyLocator(loadingRing).build().parseSignedClaims(token).getPayload().getSubject());
+    }
+
+    private SigningKeyRing signingKeyRing(String keyEncryptionKey) {
+        return new SigningKeyRing(signingKeyRepository, KEY, "HS256", "", "", "", keyEncryptionKey, TOKEN_DURATION,
+                Duration.ofDays(30), Duration.ofMinutes(10), 60000, Duration.ofMinutes(5));
+    }
+
+    private static SigningKey hs256Key(String kid, LocalDateTime activatesAt) {
+        return new SigningKey(kid, "HS256", Encoders.BASE64.encode(Jwts.SIG.HS256.key().build().getEncoded()), null,
+                activatesAt, activatesAt);
+    }
+}
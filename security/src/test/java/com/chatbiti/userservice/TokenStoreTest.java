@@ -0,0 +1,311 @@
+package com.chatbiti.userservice;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.chatbiti.userservice.model.*;
+
+// Runs against H2 without a surrounding test transaction, TokenStore manages its own
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenStoreTest {
+    private static final long REFRESH_TOKEN_DURATION = 2592000000L;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedSessionRepository revokedSessionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TokenStore tokenStore;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User("test@example.com", "password", "John", "Doe", false, new ArrayList<>()));
+        tokenStore = tokenStore(false, 0, REFRESH_TOKEN_DURATION, 10000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenRepository.deleteAll();
+        userRepository.deleteAll();
+        revokedSessionRepository.deleteAll();
+    }
+
+    @Test
+    void testClaimRefreshToken_FirstUseSucceeds() {
+        // Arrange
+        String refreshToken = tokenStore.issueRefreshToken(user, "family");
+
+        // Act
+        Optional<Token> claimedToken = tokenStore.claimRefreshToken(refreshToken);
+
+        // Assert
+        assertTrue(claimedToken.isPresent());
+        assertEquals("family", claimedToken.get().getFamily());
+        assertEquals(user.getEmail(), claimedToken.get().getUser().getEmail());
+        assertTrue(tokenRepository.findByTokenDigest(TokenDigest.of(refreshToken)).orElseThrow().isUsed());
+    }
+
+    @Test
+    void testClaimRefreshToken_ReuseRevokesWholeFamily() {
+        // Arrange
+        String refreshToken = tokenStore.issueRefreshToken(user, "family");
+        tokenStore.claimRefreshToken(refreshToken);
+        String rotatedToken = tokenStore.issueRefreshToken(user, "family");
+        String otherSession = tokenStore.issueRefreshToken(user, "other");
+
+        // Act
+        Optional<Token> replayedToken = tokenStore.claimRefreshToken(refreshToken);
+
+        // Assert
+        assertTrue(replayedToken.isEmpty());
+        assertFalse(tokenRepository.existsByFamily("family"));
+        assertTrue(tokenStore.claimRefreshToken(rotatedToken).isEmpty());
+        assertTrue(tokenStore.isSessionRevoked("family"));
+        assertTrue(tokenStore.claimRefreshToken(otherSession).isPresent());
+    }
+
+    @Test
+    void testClaimRefreshToken_RefusesExpiredToken() {
+        // Arrange
+        TokenStore expiringTokenStore = tokenStore(false, 0, -60000, 10000);
+        String refreshToken = expiringTokenStore.issueRefreshToken(user, "family");
+
+        // Act
+        Optional<Token> claimedToken = expiringTokenStore.claimRefreshToken(refreshToken);
+
+        // Assert
+        assertTrue(claimedToken.isEmpty());
+    }
+
+    @Test
+    void testClaimRefreshToken_ReplayOfAnyOlderTokenRevokesFamily() {
+        // Arrange
+        String firstToken = tokenStore.issueRefreshToken(user, "family");
+        tokenStore.claimRefreshToken(firstToken);
+        String secondToken = tokenStore.issueRefreshToken(user, "family");
+        tokenStore.claimRefreshToken(secondToken);
+        String thirdToken = tokenStore.issueRefreshToken(user, "family");
+
+        // Act
+        Optional<Token> replayedToken = tokenStore.claimRefreshToken(firstToken);
+
+        // Assert
+        assertTrue(replayedToken.isEmpty());
+        assertTrue(tokenStore.isSessionRevoked("family"));
+        assertFalse(tokenRepository.existsByFamily("family"));
+        assertTrue(tokenStore.claimRefreshToken(thirdToken).isEmpty());
+    }
+
+    @Test
+    void testIsActive_RechecksIndexHitsRevokedElsewhere() {
+        // Arrange
+        TokenStore rechecking = tokenStore(false, 0, REFRESH_TOKEN_DURATION, 0);
+        TokenStore trusting = tokenStore(false, 0, REFRESH_TOKEN_DURATION, 60000);
+        rechecking.save(bearerToken("token"));
+        trusting.isActive("token");
+
+        // Act
+        boolean deleted = tokenStore.delete("token");
+
+        // Assert
+        assertTrue(deleted);
+        assertFalse(rechecking.isActive("token"));
+        // Trusted from the index until its recheck is due
+        assertTrue(trusting.isActive("token"));
+    }
+
+    @Test
+    void testDeleteAll_RevokesEverySessionOfTheUserOnly() {
+        // Arrange
+        User otherUser = userRepository.save(new User("other@example.com", "password", "Jane", "Doe", false, new ArrayList<>()));
+        tokenStore.save(bearerToken("first"));
+        tokenStore.save(bearerToken("second"));
+        tokenStore.issueRefreshToken(user, "family");
+        tokenStore.save(new Token("other", LocalDateTime.now().plusHours(1), TokenType.BEARER, otherUser));
+
+        // Act
+        int revoked = tokenStore.deleteAll(user.getEmail());
+
+        // Assert
+        assertEquals(3, revoked);
+        assertFalse(tokenStore.isActive("first"));
+        assertFalse(tokenStore.isActive("second"));
+        assertTrue(tokenStore.isSessionRevoked("family"));
+        assertTrue(tokenStore.isActive("other"));
+    }
+
+    @Test
+    void testEnforceSessionCap_RevokesOldestSessions() {
+        // Arrange
+        TokenStore cappedTokenStore = tokenStore(false, 2, REFRESH_TOKEN_DURATION, 10000);
+        cappedTokenStore.save(bearerToken("oldest"));
+        cappedTokenStore.issueRefreshToken(user, "family");
+        cappedTokenStore.save(bearerToken("newest"));
+
+        // Act
+        cappedTokenStore.enforceSessionCap(user);
+
+        // Assert
+        assertFalse(cappedTokenStore.isActive("oldest"));
+        assertTrue(tokenRepository.existsByFamily("family"));
+        assertTrue(cappedTokenStore.isActive("newest"));
+    }
+
+    @Test
+    void testFlush_CommitsQueuedTokensInOneBatch() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(true, 0, REFRESH_TOKEN_DURATION, 10000);
+        writeBehindTokenStore.save(bearerToken("first"));
+        writeBehindTokenStore.save(bearerToken("second"));
+        assertEquals(0, tokenRepository.count());
+
+        // Act
+        writeBehindTokenStore.flush();
+
+        // Assert
+        assertTrue(tokenRepository.existsByTokenDigest(TokenDigest.of("first")));
+        assertTrue(tokenRepository.existsByTokenDigest(TokenDigest.of("second")));
+    }
+
+    @Test
+    void testFlush_FallsBackToRowByRowOnDuplicate() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(true, 0, REFRESH_TOKEN_DURATION, 10000);
+        tokenRepository.save(bearerToken("duplicate"));
+        writeBehindTokenStore.save(bearerToken("duplicate"));
+        writeBehindTokenStore.save(bearerToken("fresh"));
+
+        // Act
+        writeBehindTokenStore.flush();
+
+        // Assert
+        assertEquals(2, tokenRepository.count());
+        assertTrue(tokenRepository.existsByTokenDigest(TokenDigest.of("fresh")));
+    }
+
+    @Test
+    void testFlush_RequeuesTokensWhenTransactionFails() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(failingOnce(), true);
+        writeBehindTokenStore.save(bearerToken("token"));
+
+        // Act
+        assertThrows(QueryTimeoutException.class, writeBehindTokenStore::flush);
+        long countAfterFailure = tokenRepository.count();
+        writeBehindTokenStore.flush();
+
+        // Assert
+        assertEquals(0, countAfterFailure);
+        assertTrue(tokenRepository.existsByTokenDigest(TokenDigest.of("token")));
+        assertTrue(writeBehindTokenStore.isActive("token"));
+    }
+
+    @Test
+    void testFlush_AppliesQueuedDeleteAfterItsInsert() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(true, 0, REFRESH_TOKEN_DURATION, 10000);
+        writeBehindTokenStore.save(bearerToken("deleted"));
+        writeBehindTokenStore.save(bearerToken("kept"));
+        writeBehindTokenStore.delete("deleted");
+
+        // Act
+        writeBehindTokenStore.flush();
+
+        // Assert
+        assertFalse(tokenRepository.existsByTokenDigest(TokenDigest.of("deleted")));
+        assertFalse(writeBehindTokenStore.isActive("deleted"));
+        assertTrue(tokenRepository.existsByTokenDigest(TokenDigest.of("kept")));
+    }
+
+    @Test
+    void testDelete_LogoutBeforeFlushKeepsTokenRevoked() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(true, 0, REFRESH_TOKEN_DURATION, 0);
+        writeBehindTokenStore.save(bearerToken("token"));
+        writeBehindTokenStore.evictExpired();
+
+        // Act
+        boolean deleted = writeBehindTokenStore.delete("token");
+        writeBehindTokenStore.flush();
+
+        // Assert
+        assertTrue(deleted);
+        assertFalse(tokenRepository.existsByTokenDigest(TokenDigest.of("token")));
+        assertFalse(writeBehindTokenStore.isActive("token"));
+    }
+
+    @Test
+    void testFindActive_AcceptsTokensWaitingForTheirInsert() {
+        // Arrange
+        TokenStore writeBehindTokenStore = tokenStore(true, 0, REFRESH_TOKEN_DURATION, 0);
+        writeBehindTokenStore.save(bearerToken("pending"));
+        writeBehindTokenStore.evictExpired();
+
+        // Act
+        Set<String> active = writeBehindTokenStore.findActive(List.of("pending", "unknown"));
+
+        // Assert
+        assertEquals(Set.of("pending"), active);
+    }
+
+    private Token bearerToken(String token) {
+        return new Token(token, LocalDateTime.now().plusHours(1), TokenType.BEARER, user);
+    }
+
+    private TokenStore tokenStore(boolean writeBehind, int maxSessionsPerUser, long refreshTokenDuration, long recheckInterval) {
+        return new TokenStore(tokenRepository, new TransactionTemplate(transactionManager),
+                new SessionDenylist(revokedSessionRepository, true, 900000), writeBehind, maxSessionsPerUser,
+                refreshTokenDuration, recheckInterval);
+    }
+
+    private TokenStore tokenStore(TransactionTemplate transactionTemplate, boolean writeBehind) {
+        return new TokenStore(tokenRepository, transactionTemplate,
+                new SessionDenylist(revokedSessionRepository, true, 900000), writeBehind, 0,
+                REFRESH_TOKEN_DURATION, 10000);
+    }
+
+    // Runs the first transaction's work (so ids get assigned), then rolls it back and fails like a database timeout
+    private TransactionTemplate failingOnce() {
+        return new TransactionTemplate(transactionManager) {
+            private boolean failed;
+
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                if (failed) {
+                    return super.execute(action);
+                }
+                failed = true;
+                super.execute(status -> {
+                    action.doInTransaction(status);
+                    status.setRollbackOnly();
+                    return null;
+                });
+                throw new QueryTimeoutException("Query timed out");
+            }
+        };
+    }
+}